@@ -0,0 +1,272 @@
+/*
+  File: OthAnalyser.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - headless batch annotation of game files
+
+  19 Oct 26                    A letter at the end of a line with no digit after it is
+                               reported as a bad move, rather than dropped
+*/
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+  * Headless batch analysis of recorded games.  Reads a file of games, one per
+  * line in the usual notation (e.g. "f5d6c3d3c4..."; passes are not written),
+  * replays each one on an OthPosition, and scores every position with the
+  * computer player.  The searches are shared out to a fixed pool of worker
+  * threads.
+  *
+  * Output is one line per game, written as soon as that game (and every game
+  * before it) is finished, so the memory used doesn't grow with the size of the
+  * archive.  Each move is followed by the score of the position before it, from
+  * the point of view of the player making the move, and the move the computer
+  * would have chosen, e.g. "f5:4:f5 d6:-2:c5 ...".  Scores are in the engine's
+  * units; when the endgame is solved they are the disc difference times 256.
+  *
+  * Positions which turn up in more than one game (the openings, mostly) are only
+  * searched once: results are cached by OthPosition.canonicalKey(), so
+  * reflections and rotations count as the same position, and the best move is
+  * kept in canonical form and transformed back for each game.  The cache is
+  * limited in size, and the least recently used positions are dropped first.
+  *
+  * Games can also be read from a WTHOR archive (any file ending in .wtb).
+  *
+  * Usage: java OthAnalyser [-nosolve] games.txt annotated.txt [depth [threads]]
+  *
+  * @(#)OthAnalyser.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthPosition.java
+  * @see OthPlayerThread.java
+  */
+
+public class OthAnalyser{
+
+    static final int CACHE_SIZE=1<<18; // positions remembered for sharing between games
+
+    int depth=6;
+    boolean solving=true;
+    int threads=Runtime.getRuntime().availableProcessors();
+
+    ThreadPoolExecutor pool;
+    Map<Long,Future<int[]>> cache; // canonical key -> {canonical square,score}
+
+    int games=0,badGames=0;
+    long positions=0,searches=0;
+
+    /* ---------------------------------------------------------------------- */
+    /*                                  MAIN                                  */
+    /* ---------------------------------------------------------------------- */
+
+    static public void main(String s[]) throws Exception {
+	OthAnalyser an=new OthAnalyser();
+	int a=0;
+	if(s.length>0 && s[0].equals("-nosolve")){an.solving=false; a++;}
+	if(s.length-a<2){
+	    System.out.println("Usage: java OthAnalyser [-nosolve] games.txt annotated.txt [depth [threads]]");
+	    return;
+	}
+	if(s.length>a+2) an.depth=Integer.parseInt(s[a+2]);
+	if(s.length>a+3) an.threads=Integer.parseInt(s[a+3]);
+
+	long start=System.currentTimeMillis();
+	Writer out=new BufferedWriter(new FileWriter(s[a+1]));
+	try{
+	    if(s[a].toLowerCase().endsWith(".wtb")){
+		an.analyse(new OthWthor(new File(s[a])),out);
+	    }
+	    else{
+		BufferedReader in=new BufferedReader(new FileReader(s[a]));
+		try{
+		    an.analyse(in,out);
+		}
+		finally{
+		    in.close();
+		}
+	    }
+	}
+	finally{
+	    out.close();
+	}
+	long time=System.currentTimeMillis()-start;
+	System.out.println(an.games+" games ("+an.badGames+" with errors), "+an.positions+
+			   " positions, "+an.searches+" searches, "+time+" ms");
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                           the analysis itself                          */
+    /* ---------------------------------------------------------------------- */
+
+    /** Analyses every game read from in, writing one annotated line per game to
+	out.  Lines which are empty or start with '#' are ignored. */
+    public void analyse(BufferedReader in,Writer out) throws IOException {
+	String line;
+	start();
+	try{
+	    while((line=in.readLine())!=null){
+		line=line.trim();
+		if(line.length()==0 || line.charAt(0)=='#') continue;
+		addGame(line,out);
+	    }
+	    finish(out);
+	}
+	finally{
+	    pool.shutdownNow();
+	}
+    }
+
+    /** Analyses every game in a WTHOR archive */
+    public void analyse(OthWthor w,Writer out) throws IOException {
+	start();
+	try{
+	    for(int g=0;g<w.getGameCount();g++) addGame(w.getMoveString(g),out);
+	    finish(out);
+	}
+	finally{
+	    pool.shutdownNow();
+	}
+    }
+
+    LinkedList<Game> pending; // games submitted but not yet written
+    int window;
+
+    void start(){
+
+	// A bounded queue, and running jobs in the reading thread when it is full,
+	// stops us reading the whole file in before anything is searched.
+
+	pool=new ThreadPoolExecutor(threads,threads,0,TimeUnit.MILLISECONDS,
+				    new ArrayBlockingQueue<Runnable>(threads*16),
+				    new ThreadPoolExecutor.CallerRunsPolicy());
+
+	cache=Collections.synchronizedMap(new LinkedHashMap<Long,Future<int[]>>(1024,0.75f,true){
+		protected boolean removeEldestEntry(Map.Entry<Long,Future<int[]>> eldest){
+		    return size()>CACHE_SIZE;
+		}});
+
+	pending=new LinkedList<Game>();
+	window=threads*4;
+    }
+
+    void addGame(String moves,Writer out) throws IOException {
+	pending.addLast(submitGame(moves));
+	if(pending.size()>window) writeGame(pending.removeFirst(),out);
+    }
+
+    void finish(Writer out) throws IOException {
+	while(!pending.isEmpty()) writeGame(pending.removeFirst(),out);
+    }
+
+    /** One game being analysed: its moves and the (future) score of each position */
+    class Game{
+	int moves[]=new int[60];   // squares, 0-63
+	Future<?> scores[]=new Future<?>[60];
+	byte transforms[]=new byte[60]; // from each position to its canonical form
+	int count=0;
+	String error=null;
+    }
+
+    // Replay the game, asking for a search of each position along the way
+
+    Game submitGame(String line){
+	Game g=new Game();
+	OthPosition pos=new OthPosition();
+	games++;
+
+	for(int i=0;i<line.length() && g.count<60;){
+	    char c=line.charAt(i);
+	    if(!Character.isLetter(c)){i++; continue;} // skip any separators
+	    if(i+1==line.length()){ // half a move at the end
+		g.error="incomplete move "+c+" at move "+(g.count+1);
+		badGames++;
+		break;
+	    }
+	    int sq=OthPosition.parseSquare(line.substring(i,i+2));
+	    i+=2;
+	    if(sq<0 || !pos.isLegal(1+(sq&7),1+(sq>>3))){
+		g.error="illegal move "+line.substring(i-2,i)+" at move "+(g.count+1);
+		badGames++;
+		break;
+	    }
+	    g.moves[g.count]=sq;
+	    g.transforms[g.count]=(byte)pos.canonicalTransform();
+	    g.scores[g.count++]=score(pos);
+	    pos.makeMove(1+(sq&7),1+(sq>>3));
+	    positions++;
+	}
+	return g;
+    }
+
+    // Get the score of a position, from the cache if it has been seen before
+
+    Future<int[]> score(OthPosition pos){
+	Long key=Long.valueOf(pos.canonicalKey());
+	FutureTask<int[]> f;
+	synchronized(cache){
+	    Future<int[]> known=cache.get(key);
+	    if(known!=null) return known;
+	    f=new FutureTask<int[]>(new Searcher(new OthPosition(pos)));
+	    cache.put(key,f);
+	}
+	searches++;
+	pool.execute(f);
+	return f;
+    }
+
+    // Wait for all the scores of a game and write it out
+
+    void writeGame(Game g,Writer out) throws IOException {
+	StringBuffer sb=new StringBuffer();
+	for(int i=0;i<g.count;i++){
+	    int result[]=null;
+	    try{
+		result=(int[])g.scores[i].get();
+	    }
+	    catch(InterruptedException e){
+		throw new InterruptedIOException("Analysis interrupted");
+	    }
+	    catch(ExecutionException e){
+		System.out.println("Error: search failed: "+e.getCause());
+	    }
+	    if(i>0) sb.append(' ');
+	    sb.append(OthPosition.squareName(g.moves[i]));
+	    if(result!=null){
+		int best=OthPosition.transformSquare(result[0],OthPosition.inverse(g.transforms[i]));
+		sb.append(':').append(result[1]).append(':').append(OthPosition.squareName(best));
+	    }
+	    else sb.append(":?");
+	}
+	if(g.error!=null) sb.append(" # ").append(g.error);
+	out.write(sb.toString());
+	out.write('\n');
+	out.flush();
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*      search of one position, run by one of the pool's threads          */
+    /* ---------------------------------------------------------------------- */
+
+    class Searcher implements Callable<int[]>{
+	OthPosition pos;
+
+	Searcher(OthPosition pos){this.pos=pos;}
+
+	public int[] call(){
+	    int board[][]=new int[10][10];
+	    pos.toArray(board);
+	    OthPlayerThread opt=new OthPlayerThread();
+	    opt.setAnalysing(true);
+	    opt.setup(board,pos.whoseMove,depth,solving);
+	    int move[]=opt.search();
+	    if(move==null) return null;
+	    int sq=(move[1]-1)*8+(move[0]-1);
+	    int result[]=new int[2];
+	    result[0]=OthPosition.transformSquare(sq,pos.canonicalTransform());
+	    result[1]=move[3];
+	    return result;
+	}
+    }
+
+} // end of class OthAnalyser
@@ -0,0 +1,228 @@
+/*
+  File: OthBatchEval.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - the evaluation of many positions at a time
+*/
+
+import java.util.*;
+
+/**
+  * Evaluates a batch of positions at once, for things which need the
+  * evaluation of a great many positions rather than a search of one (training,
+  * analysing a database of games, Monte Carlo searches).  It gives the same
+  * scores as OthPlayerThread.assess(), from black's point of view: mobility
+  * (legal moves counted along each row, column and diagonal of 4 or more
+  * squares, black's less white's, times MOBIL_WEIGHT), the corner, X and C
+  * squares, and the stable discs on the edges.
+  *
+  * The positions are kept as bitboards (as OthPosition), all the black boards
+  * in one array and all the white in another, rather than an object per
+  * position: the loops over the batch then read memory in order, and the
+  * mobility, done with shifts and masks on whole boards, can work on several
+  * positions at once with the Vector API.  create() gives a batch which does
+  * that (OthBatchEvalVector) when it is available, and this class, which does
+  * one position after another, when it isn't; see README.md.
+  *
+  * Usage: add() the positions, evaluate(), then read getMobility() and
+  * getScore() by the index add() gave.  clear() to use it again.
+  *
+  * @(#)OthBatchEval.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthPlayerThread.java
+  * @see OthPosition.java
+  */
+
+public class OthBatchEval{
+
+    static final int MOBIL_WEIGHT=OthPlayerThread.MOBIL_WEIGHT;
+    static final int STABLE_WEIGHT=OthPlayerThread.STABLE_WEIGHT;
+
+    static final long SIDEWAYS=0x7e7e7e7e7e7e7e7eL; // pieces which can be flipped sideways
+    static final long NOT_A=OthPosition.NOT_A,NOT_H=OthPosition.NOT_H;
+    static final long CORNERS=0x8100000000000081L;
+    static final long X_SQUARES=0x0042000000004200L;
+    static final long C_SQUARES=0x4281000000008142L;
+    static final long DIAG1_SCORED,DIAG2_SCORED;
+    // squares on diagonals of 4 or more, which assess() counts the mobility of
+    static final long DIAG1_ENDS,DIAG2_ENDS;
+    // the last square of each of those shorter than 8, see overEnd()
+
+    static final short edgeScore[]=new short[65536];
+    // stable black discs less stable white on an edge, by black's 8 bits * 256 +
+    // white's, from OthPlayerThread's table by ternary index
+
+    static{
+	long d1=0,d2=0,e1=0,e2=0;
+	for(int x=1;x<9;x++){
+	    for(int y=1;y<9;y++){
+		int i1=x+y-2,i2=(7-x)+y; // as OthPlayerThread's diag1 and diag2
+		if(i1>=3 && i1<=11) d1|=OthPosition.bit(x,y);
+		if(i2>=3 && i2<=11) d2|=OthPosition.bit(x,y);
+		if(i1>=3 && i1<=11 && i1!=7 && (x==1 || y==8)) e1|=OthPosition.bit(x,y);
+		if(i2>=3 && i2<=11 && i2!=7 && (x==8 || y==8)) e2|=OthPosition.bit(x,y);
+	    }
+	}
+	DIAG1_SCORED=d1; DIAG2_SCORED=d2;
+	DIAG1_ENDS=e1; DIAG2_ENDS=e2;
+
+	for(int b=0;b<256;b++){
+	    for(int w=0;w<256;w++){
+		if((b & w)!=0) continue;
+		int index=0;
+		for(int j=0;j<8;j++){
+		    if((b>>j & 1)!=0) index+=OthPlayerThread.placeOffsetTableB[j];
+		    else if((w>>j & 1)!=0) index+=OthPlayerThread.placeOffsetTableW[j];
+		}
+		edgeScore[b<<8 | w]=(short)OthPlayerThread.stableScoreTable[index];
+	    }
+	}
+    }
+
+    long black[],white[]; // the positions
+    int mobility[],score[];   // and, after evaluate(), their scores for black
+    int count=0;
+
+    /** A batch with room for capacity positions to start with (it grows as
+	needed), done one position at a time */
+    public OthBatchEval(int capacity){
+	capacity=Math.max(1,capacity);
+	black=new long[capacity];
+	white=new long[capacity];
+	mobility=new int[capacity];
+	score=new int[capacity];
+    }
+
+    /** A batch using the Vector API if this JVM has it (java --add-modules
+	jdk.incubator.vector, with OthBatchEvalVector compiled), or else one
+	which does a position at a time */
+    public static OthBatchEval create(int capacity){
+	try{
+	    Class<?> c=Class.forName("OthBatchEvalVector");
+	    return (OthBatchEval)c.getConstructor(int.class).newInstance(Integer.valueOf(capacity));
+	}
+	catch(Exception e){}
+	catch(LinkageError e){} // the class is there, but not the module
+	return new OthBatchEval(capacity);
+    }
+
+    /** How the batch is evaluated, for printing */
+    public String getKind(){return "scalar";}
+
+    public int size(){return count;}
+
+    /** Empties the batch (keeping the arrays) */
+    public void clear(){count=0;}
+
+    /** Adds a position, black's pieces and white's (bits as OthPosition), and
+	returns its index */
+    public int add(long b,long w){
+	if(count==black.length){
+	    int n=count*2;
+	    black=Arrays.copyOf(black,n);
+	    white=Arrays.copyOf(white,n);
+	    mobility=Arrays.copyOf(mobility,n);
+	    score=Arrays.copyOf(score,n);
+	}
+	black[count]=b;
+	white[count]=w;
+	return count++;
+    }
+
+    public int add(OthPosition pos){return add(pos.black,pos.white);}
+
+    /** The mobility part of position i's score, for black */
+    public int getMobility(int i){return mobility[i];}
+
+    /** Position i's score for black, as OthPlayerThread.assess(BLACK) (negate
+	it for white) */
+    public int getScore(int i){return score[i];}
+
+    /** Works out the scores of all the positions */
+    public void evaluate(){
+	evaluate(0,count);
+    }
+
+    /** Works out the scores of positions from to to-1, one at a time */
+    void evaluate(int from,int to){
+	for(int i=from;i<to;i++){
+	    long b=black[i],w=white[i];
+	    int m=mobility(b,w);
+	    mobility[i]=m;
+	    score[i]=m+squares(b,w)+edges(b,w);
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                       the parts of the evaluation                      */
+    /* ---------------------------------------------------------------------- */
+
+    /** Legal moves counted along each line, black's less white's, weighted.  A
+	move counts once for each direction of line (row, column, diagonal) in
+	which it flips pieces, as with OthPlayerThread's mobilityTable. */
+    static int mobility(long b,long w){
+	long empty=~(b|w);
+	int m=Long.bitCount(lineMoves(b,w & SIDEWAYS,empty,1));
+	m+=Long.bitCount(lineMoves(b,w,empty,8));
+	m+=Long.bitCount(lineMoves(b,w & SIDEWAYS,empty,7) & DIAG1_SCORED);
+	m+=Long.bitCount(lineMoves(b,w & SIDEWAYS,empty,9) & DIAG2_SCORED);
+	m-=Long.bitCount(lineMoves(w,b & SIDEWAYS,empty,1));
+	m-=Long.bitCount(lineMoves(w,b,empty,8));
+	m-=Long.bitCount(lineMoves(w,b & SIDEWAYS,empty,7) & DIAG1_SCORED);
+	m-=Long.bitCount(lineMoves(w,b & SIDEWAYS,empty,9) & DIAG2_SCORED);
+	m+=overEnd(b,w)-overEnd(w,b);
+	return m*MOBIL_WEIGHT;
+    }
+
+    /** A diagonal's index has a digit for 8 squares whatever its length, and
+	the ones past the end are empty, so mobilityTable counts a move just past
+	the far end (towards y=8) of a diagonal shorter than 8 when own could
+	flip the pieces up to the end.  So must we, for the scores to be the same
+	as assess()'s.  This counts those moves for own. */
+    static int overEnd(long own,long opp){
+	long t;
+	t=opp&((own&NOT_A)<<7); t|=opp&((t&NOT_A)<<7); t|=opp&((t&NOT_A)<<7);
+	t|=opp&((t&NOT_A)<<7); t|=opp&((t&NOT_A)<<7); t|=opp&((t&NOT_A)<<7);
+	long u;
+	u=opp&((own&NOT_H)<<9); u|=opp&((u&NOT_H)<<9); u|=opp&((u&NOT_H)<<9);
+	u|=opp&((u&NOT_H)<<9); u|=opp&((u&NOT_H)<<9); u|=opp&((u&NOT_H)<<9);
+	return Long.bitCount(t & DIAG1_ENDS)+Long.bitCount(u & DIAG2_ENDS);
+    }
+
+    /** The moves for own which flip pieces along lines of the given step (1
+	rows, 8 columns, 7 and 9 the diagonals), in both directions, as
+	OthPosition.legalMoves().  opp is the pieces which can be flipped. */
+    static long lineMoves(long own,long opp,long empty,int s){
+	long t,moves;
+	t=opp&(own<<s); t|=opp&(t<<s); t|=opp&(t<<s); t|=opp&(t<<s); t|=opp&(t<<s); t|=opp&(t<<s);
+	moves=t<<s;
+	t=opp&(own>>>s); t|=opp&(t>>>s); t|=opp&(t>>>s); t|=opp&(t>>>s); t|=opp&(t>>>s); t|=opp&(t>>>s);
+	moves|=t>>>s;
+	return moves & empty;
+    }
+
+    /** Corners, X squares and C squares, as assess() */
+    static int squares(long b,long w){
+	return 32*(Long.bitCount(b & CORNERS)-Long.bitCount(w & CORNERS))
+	    -8*(Long.bitCount(b & X_SQUARES)-Long.bitCount(w & X_SQUARES))
+	    -4*(Long.bitCount(b & C_SQUARES)-Long.bitCount(w & C_SQUARES));
+    }
+
+    /** Stable discs on the four edges, weighted (corners count on both their
+	edges, as in assess()) */
+    static int edges(long b,long w){
+	int s=edgeScore[(int)(b & 0xff)<<8 | (int)(w & 0xff)];         // y=1
+	s+=edgeScore[(int)(b>>>56)<<8 | (int)(w>>>56)];                // y=8
+	s+=edgeScore[column(b,0)<<8 | column(w,0)];                     // x=1
+	s+=edgeScore[column(b,7)<<8 | column(w,7)];                     // x=8
+	return s*STABLE_WEIGHT;
+    }
+
+    /** The pieces in column x-1 as 8 bits (in some order, the same for both
+	players, which is all edgeScore needs as stability doesn't depend on
+	which way along the edge it is read) */
+    static int column(long m,int x){
+	return (int)((((m>>>x) & 0x0101010101010101L)*0x0102040810204080L)>>>56);
+    }
+
+} // end of class OthBatchEval
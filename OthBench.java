@@ -0,0 +1,1256 @@
+/*
+  File: OthBench.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - timings for the computer player
+
+  19 Oct 26                    Board drawing, with and without OthPanel's cached rendering
+
+  19 Oct 26                    Many games at once through OthSessionManager
+
+  19 Oct 26                    Aspiration windows
+
+  19 Oct 26                    MTD(f) against alpha-beta
+
+  19 Oct 26                    Selective search (Multi-ProbCut)
+
+  19 Oct 26                    Keeping the search from one move to the next
+
+  19 Oct 26                    Timed games, with a fixed depth and with OthClock
+
+  19 Oct 26                    How quickly a search stops
+
+  19 Oct 26                    Memory allocated per search
+
+  19 Oct 26                    Endgame solving, with and without ordering the root moves
+
+  19 Oct 26                    Endgame solving with a transposition table, with and without
+                               enhanced transposition cutoffs
+
+  19 Oct 26                    Transposition tables on and off the heap
+
+  19 Oct 26                    A table shared by many threads, without locks and with them
+
+  19 Oct 26                    Evaluating batches of positions
+
+  19 Oct 26                    OthServer on localhost: /move, /stream and bad requests
+
+  19 Oct 26                    Moves from searches stopped by their deadline
+
+  19 Oct 26                    Memory per session after a computer move, as well as new
+*/
+
+import java.awt.*;
+import java.awt.image.*;
+import java.io.*;
+import java.lang.management.*;
+import java.net.*;
+import java.util.*;
+
+/**
+  * Benchmarks for the computer player, run from the command line.  Test
+  * positions come from random games (with a fixed seed, so every run uses the
+  * same ones), and each benchmark checks that the things it compares give the
+  * same answers as well as timing them.
+  *
+  * Usage: java OthBench eval [positions [maxdepth]]
+  *   Incremental evaluation against working it out at every leaf, at depths
+  *   from 2 up to maxdepth.
+  *
+  * Usage: java -Djava.awt.headless=true OthBench paint [games [size]]
+  *   Repainting the board after each move of some random games, drawing
+  *   everything against OthPanel's cached rendering of just the changed squares,
+  *   with the board size pixels across (default 256).
+  *
+  * Usage: java OthBench aspiration [positions [maxdepth]]
+  *   Searching the root with an aspiration window around the score from one
+  *   ply less deep, against an infinite window.
+  *
+  * Usage: java OthBench mtdf [positions [maxdepth [empties]]]
+  *   MTD(f) against alpha-beta (with and without the transposition table) at
+  *   depths from 3 up to maxdepth, then solving endgames with that many empty
+  *   squares (default 14).
+  *
+  * Usage: java OthBench probcut [positions [maxdepth]]
+  *   The selective search (OthProbCut's parameters) against the full-width
+  *   one, at depths from 4 up to maxdepth: how much quicker, and how often it
+  *   chooses a different move.
+  *
+  * Usage: java OthBench reuse [games [depth]]
+  *   Games played from random openings, each position searched with nothing
+  *   kept from the move before, with a new transposition table, and with an
+  *   OthGameMemory for the game; endgames are solved.
+  *
+  * Usage: java OthBench clock [games [seconds [increment [depth]]]]
+  *   Timed games, computer against computer from random openings, with each
+  *   side having that many seconds (and an increment in ms per move): first at
+  *   a fixed depth, then playing to the clock.  How much of the clock is used,
+  *   how often a side runs out of time, how deep the clock's searches go, and
+  *   how far they run over the hard limit.
+  *
+  * Usage: java OthBench stop [searches [empties]]
+  *   How long a search takes to stop: endgame solves with that many empty
+  *   squares (default 20) stopped by stopit() from another thread, and deep
+  *   midgame searches stopped by a deadline, each after a random time, and how
+  *   many of those still gave the best of the root moves they had finished.
+  *
+  * Usage: java OthBench endgame [positions [empties]]
+  *   Win/loss/draw and exact solves of endgames from games the computer
+  *   played against itself, with the root moves in the order they are found
+  *   and put in order by a shallow search at depths 2, 4 and 6.  Then exact
+  *   solves with a transposition table, with and without enhanced transposition
+  *   cutoffs: how many children were looked up and how many gave a cutoff.
+  *
+  * Usage: java OthBench tables [positions [empties [bits]]]
+  *   Exact endgame solves with a transposition table of 2^bits entries
+  *   (default 22, 64MB) on the Java heap (OthHashTable) and off it
+  *   (OthDirectHashTable), the table cleared before each: time, nodes, heap
+  *   used and garbage collection.  Try a big table with a small -Xmx (and
+  *   -XX:MaxDirectMemorySize, which is the same as -Xmx unless set).
+  *
+  * Usage: java OthBench shared [threads [millions]]
+  *   OthSharedHashTable used by that many threads at once (default 16): first
+  *   hammering a small table with stores and probes whose data can be checked,
+  *   to show that torn entries are never believed (with OthHashTable, which
+  *   has no such check, for comparison); then endgame solves, all sharing the
+  *   one table, checked against solves without one; then how many millions of
+  *   probes and stores a second the threads manage (millions of them each),
+  *   against a table with striped locks, with 1 thread and with them all.
+  *
+  * Usage: java OthBench batch [positions [rounds]]
+  *   Evaluating many positions (default 100000), one at a time with
+  *   OthPlayerThread.evaluate() against OthBatchEval, and OthBatchEvalVector
+  *   when the Vector API is there (run with --add-modules jdk.incubator.vector
+  *   and the class compiled, see README.md): positions a second, and whether
+  *   the scores agree.
+  *
+  * Usage: java OthBench alloc [searches [depth]]
+  *   Bytes allocated per search (measured by the JVM for the searching
+  *   thread), with a new player and new working storage for each search, a new
+  *   player using the thread's OthSearchContext, and one player used again.
+  *
+  * Usage: java OthBench server
+  *   Starts an OthServer on a free port on localhost and checks its answers:
+  *   a move from /move, progress and move events from /stream, and status 400
+  *   for a bad board and for a body which can't be decoded.  Also that error
+  *   messages with control characters in them are escaped.
+  *
+  * Usage: java OthBench sessions [games [depth [ms [threads]]]]
+  *   Memory used per OthSessionManager session, new and after a computer move
+  *   (which gives it a game memory), then that many games played at once,
+  *   computer against computer, with the given depth and time limit per move,
+  *   sharing one pool of search threads.
+  *
+  * @(#)OthBench.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthPlayerThread.java
+  */
+
+public class OthBench{
+
+    static final int BLACK=1,WHITE=-1;
+
+    /* ---------------------------------------------------------------------- */
+    /*                                  MAIN                                  */
+    /* ---------------------------------------------------------------------- */
+
+    static public void main(String s[]) throws Exception {
+	String what=(s.length>0) ? s[0] : "";
+	if(what.equals("eval")){
+	    benchEval(arg(s,1,40),arg(s,2,7));
+	}
+	else if(what.equals("paint")){
+	    benchPaint(arg(s,1,200),arg(s,2,256));
+	}
+	else if(what.equals("aspiration")){
+	    benchAspiration(arg(s,1,40),arg(s,2,7));
+	}
+	else if(what.equals("mtdf")){
+	    benchMTDf(arg(s,1,40),arg(s,2,7),arg(s,3,14));
+	}
+	else if(what.equals("probcut")){
+	    benchProbCut(arg(s,1,40),arg(s,2,8));
+	}
+	else if(what.equals("reuse")){
+	    benchReuse(arg(s,1,10),arg(s,2,6));
+	}
+	else if(what.equals("clock")){
+	    benchClock(arg(s,1,4),arg(s,2,60),arg(s,3,0),arg(s,4,6));
+	}
+	else if(what.equals("stop")){
+	    benchStop(arg(s,1,20),arg(s,2,20));
+	}
+	else if(what.equals("endgame")){
+	    benchEndgame(arg(s,1,20),arg(s,2,16));
+	}
+	else if(what.equals("tables")){
+	    benchTables(arg(s,1,20),arg(s,2,16),arg(s,3,22));
+	}
+	else if(what.equals("shared")){
+	    benchShared(arg(s,1,16),arg(s,2,4));
+	}
+	else if(what.equals("batch")){
+	    benchBatch(arg(s,1,100000),arg(s,2,10));
+	}
+	else if(what.equals("alloc")){
+	    benchAlloc(arg(s,1,2000),arg(s,2,3));
+	}
+	else if(what.equals("server")){
+	    benchServer();
+	}
+	else if(what.equals("sessions")){
+	    benchSessions(arg(s,1,100),arg(s,2,6),arg(s,3,200),
+			  arg(s,4,Runtime.getRuntime().availableProcessors()));
+	}
+	else{
+	    System.out.println("Usage: java OthBench eval [positions [maxdepth]]");
+	    System.out.println("       java OthBench paint [games [size]]");
+	    System.out.println("       java OthBench aspiration [positions [maxdepth]]");
+	    System.out.println("       java OthBench mtdf [positions [maxdepth [empties]]]");
+	    System.out.println("       java OthBench probcut [positions [maxdepth]]");
+	    System.out.println("       java OthBench reuse [games [depth]]");
+	    System.out.println("       java OthBench clock [games [seconds [increment [depth]]]]");
+	    System.out.println("       java OthBench stop [searches [empties]]");
+	    System.out.println("       java OthBench endgame [positions [empties]]");
+	    System.out.println("       java OthBench tables [positions [empties [bits]]]");
+	    System.out.println("       java OthBench shared [threads [millions]]");
+	    System.out.println("       java OthBench batch [positions [rounds]]");
+	    System.out.println("       java OthBench alloc [searches [depth]]");
+	    System.out.println("       java OthBench server");
+	    System.out.println("       java OthBench sessions [games [depth [ms [threads]]]]");
+	}
+    }
+
+    static int arg(String s[],int i,int def){
+	return (s.length>i) ? Integer.parseInt(s[i]) : def;
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                              test positions                            */
+    /* ---------------------------------------------------------------------- */
+
+    /** Makes n positions by playing random moves from the start until there are
+	the given number of empty squares.  Positions where the game has ended are
+	skipped. */
+    static OthPosition[] randomPositions(int n,int empties,long seed){
+	Random r=new Random(seed);
+	OthPosition list[]=new OthPosition[n];
+	for(int i=0;i<n;){
+	    OthPosition pos=new OthPosition();
+	    while(pos.whoseMove!=0 && pos.countEmpty()>empties){
+		long moves=pos.legalMoves();
+		int pick=r.nextInt(Long.bitCount(moves));
+		for(int j=0;j<pick;j++) moves&=moves-1; // drop the first few
+		int sq=Long.numberOfTrailingZeros(moves);
+		pos.makeMove(1+(sq&7),1+(sq>>3));
+	    }
+	    if(pos.whoseMove!=0) list[i++]=pos;
+	}
+	return list;
+    }
+
+    /** Makes n positions with the given number of empty squares (or a few less
+	after passes), from games the computer plays against itself at depth 2
+	after a few random moves: more like real endgames than randomPositions(). */
+    static OthPosition[] endgamePositions(int n,int empties,long seed){
+	Random r=new Random(seed);
+	OthPosition list[]=new OthPosition[n];
+	for(int i=0;i<n;){
+	    OthPosition pos=new OthPosition();
+	    int opening=6+r.nextInt(5);
+	    for(int ply=0;pos.whoseMove!=0 && pos.countEmpty()>empties;ply++){
+		if(ply<opening){
+		    long moves=pos.legalMoves();
+		    int pick=r.nextInt(Long.bitCount(moves));
+		    for(int j=0;j<pick;j++) moves&=moves-1;
+		    int sq=Long.numberOfTrailingZeros(moves);
+		    pos.makeMove(1+(sq&7),1+(sq>>3));
+		}
+		else{
+		    int move[]=player(pos,2,false).search();
+		    pos.makeMove(move[0],move[1]);
+		}
+	    }
+	    if(pos.whoseMove!=0) list[i++]=pos;
+	}
+	return list;
+    }
+
+    /** A computer player set up for one search of pos */
+    static OthPlayerThread player(OthPosition pos,int depth,boolean solving){
+	int board[][]=new int[10][10];
+	pos.toArray(board);
+	OthPlayerThread opt=new OthPlayerThread();
+	opt.setAnalysing(true);
+	opt.setup(board,pos.whoseMove,depth,solving);
+	return opt;
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                          incremental evaluation                        */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchEval(int n,int maxDepth){
+	OthPosition pos[]=randomPositions(n,36,1);
+	System.out.println("Incremental evaluation, "+n+" midgame positions");
+	System.out.println("depth       nodes    full (ms)  incremental (ms)  speedup");
+
+	for(int depth=2;depth<=maxDepth;depth++){
+	    long time[]=new long[2];
+	    long nodes=0;
+	    int results[][]=new int[2][];
+
+	    // two passes, and only the second one timed, to let the JIT settle down
+	    for(int pass=0;pass<2;pass++){
+		time[0]=time[1]=0;
+		for(int i=0;i<n;i++){
+		    for(int inc=0;inc<2;inc++){
+			OthPlayerThread opt=player(pos[i],depth,false);
+			opt.setIncrementalEval(inc==1);
+			long start=System.nanoTime();
+			results[inc]=opt.search();
+			time[inc]+=System.nanoTime()-start;
+			if(inc==1) nodes+=opt.nodes;
+		    }
+		    if(!Arrays.equals(results[0],results[1])){
+			System.out.println("Error: results differ for position "+i+" at depth "+depth);
+			return;
+		    }
+		}
+	    }
+	    System.out.println(pad(depth,5)+pad(nodes/2,12)+pad(time[0]/1000000,13)+
+			       pad(time[1]/1000000,18)+"     "+
+			       (time[1]>0 ? ((time[0]*100/time[1])/100.0)+"x" : "-"));
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                          aspiration windows                            */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchAspiration(int n,int maxDepth){
+	OthPosition pos[]=randomPositions(n,36,1);
+	System.out.println("Aspiration windows, "+n+" midgame positions");
+	System.out.println("depth   full window nodes   aspiration nodes   saved  re-searches");
+
+	for(int depth=3;depth<=maxDepth;depth++){
+	    long nodes[]=new long[2];
+	    int researches=0;
+	    for(int i=0;i<n;i++){
+		OthPlayerThread opt=player(pos[i],depth,false);
+		int full[]=opt.search();
+		nodes[0]+=opt.nodes;
+
+		// the expected score comes from a search one ply shallower
+		opt=player(pos[i],depth-1,false);
+		int expected=opt.search()[3];
+		opt=player(pos[i],depth,false);
+		opt.setAspiration(expected);
+		int asp[]=opt.search();
+		nodes[1]+=opt.nodes;
+		researches+=opt.researches;
+
+		if(!Arrays.equals(full,asp)){
+		    System.out.println("Error: results differ for position "+i+" at depth "+depth);
+		    return;
+		}
+	    }
+	    System.out.println(pad(depth,5)+pad(nodes[0],20)+pad(nodes[1],19)+
+			       pad(100-nodes[1]*100/nodes[0],7)+"%"+pad(researches,12));
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                                MTD(f)                                  */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchMTDf(int n,int maxDepth,int empties){
+	OthPosition pos[]=randomPositions(n,36,1);
+	System.out.println("MTD(f), "+n+" midgame positions, then "+n+" endgames with "+
+			   empties+" empties");
+	System.out.println("depth   alpha-beta nodes   with table   MTD(f) nodes   saved  searches");
+	for(int depth=3;depth<=maxDepth;depth++){
+	    if(!compareMTDf(pos,depth,false,depth)) return;
+	}
+	if(!compareMTDf(randomPositions(n,empties,2),60,true,empties)) return;
+    }
+
+    // One line of the table: the same searches done the three ways.  The scores
+    // must agree, but the moves may not, where two moves have the same score.
+
+    static boolean compareMTDf(OthPosition pos[],int depth,boolean solving,int label){
+	long nodes[]=new long[3],time[]=new long[3];
+	int passes=0;
+	for(int i=0;i<pos.length;i++){
+	    int expected=0; // MTD(f)'s first guess, from one ply less deep
+	    if(!solving) expected=player(pos[i],depth-1,false).search()[3];
+	    int result[][]=new int[3][];
+	    for(int way=0;way<3;way++){
+		OthPlayerThread opt=player(pos[i],Math.min(depth,20),solving);
+		if(way==1) opt.setHashTable(new OthHashTable(OthPlayerThread.HASH_BITS));
+		if(way==2){
+		    opt.setAspiration(expected);
+		    opt.setMTDf(true);
+		}
+		long start=System.nanoTime();
+		result[way]=opt.search();
+		time[way]+=System.nanoTime()-start;
+		nodes[way]+=opt.nodes;
+		if(way==2) passes+=opt.passes;
+	    }
+	    if(result[0][3]!=result[1][3] || result[0][3]!=result[2][3]){
+		System.out.println("Error: scores differ for position "+i+" at depth "+depth+": "+
+				   result[0][3]+", "+result[1][3]+", "+result[2][3]);
+		return false;
+	    }
+	}
+	System.out.println((solving ? pad(label,3)+" empties" : pad(label,5)+"   ")+
+			   pad(nodes[0],11)+pad(nodes[1],13)+pad(nodes[2],15)+
+			   pad(100-nodes[2]*100/nodes[0],7)+"%"+pad(passes,10));
+	System.out.println("  ms:"+pad(time[0]/1000000,20)+pad(time[1]/1000000,13)+
+			   pad(time[2]/1000000,15));
+	return true;
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                           selective search                             */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchProbCut(int n,int maxDepth){
+	OthPosition pos[]=randomPositions(n,36,1);
+	OthProbCut pc=OthProbCut.getDefault();
+	System.out.println("Multi-ProbCut, "+n+" midgame positions");
+	System.out.println("depth   full-width nodes     ms   selective nodes     ms"+
+			   "  other move  score error");
+
+	for(int depth=4;depth<=maxDepth;depth++){
+	    long nodes[]=new long[2],time[]=new long[2];
+	    int differ=0;
+	    long error=0;
+	    for(int i=0;i<n;i++){
+		int result[][]=new int[2][];
+		for(int sel=0;sel<2;sel++){
+		    OthPlayerThread opt=player(pos[i],depth,false);
+		    if(sel==1) opt.setProbCut(pc);
+		    long start=System.nanoTime();
+		    result[sel]=opt.search();
+		    time[sel]+=System.nanoTime()-start;
+		    nodes[sel]+=opt.nodes;
+		}
+		if(result[0][0]!=result[1][0] || result[0][1]!=result[1][1]) differ++;
+		error+=Math.abs(result[0][3]-result[1][3]);
+	    }
+	    System.out.println(pad(depth,5)+pad(nodes[0],19)+pad(time[0]/1000000,7)+
+			       pad(nodes[1],18)+pad(time[1]/1000000,7)+
+			       pad(differ,12)+pad(error/n,13));
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                       keeping the search between moves                 */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchReuse(int games,int depth){
+	System.out.println("Search reuse, "+games+" games at depth "+depth+" with solving");
+	String names[]={"fresh each move","new table each move","game memory"};
+	long nodes[][]=new long[3][2],time[][]=new long[3][2]; // midgame, endgame
+	int scores=0;
+	Random r=new Random(3);
+
+	for(int g=0;g<games;g++){
+	    OthPosition pos=new OthPosition();
+	    for(int i=0;i<8;i++){ // random opening
+		long moves=pos.legalMoves();
+		int pick=r.nextInt(Long.bitCount(moves));
+		for(int j=0;j<pick;j++) moves&=moves-1;
+		int sq=Long.numberOfTrailingZeros(moves);
+		pos.makeMove(1+(sq&7),1+(sq>>3));
+	    }
+	    OthGameMemory memory=new OthGameMemory();
+
+	    // the game follows the moves of the first way, so all three search the
+	    // same positions
+
+	    while(pos.whoseMove!=0){
+		boolean solving=pos.countEmpty()<new OthPlayerThread().solveDepth;
+		int result[][]=new int[3][];
+		for(int way=0;way<3;way++){
+		    OthPlayerThread opt=player(pos,depth,true);
+		    if(way==1) opt.setHashTable(new OthHashTable(OthPlayerThread.HASH_BITS));
+		    if(way==2) opt.setGameMemory(memory);
+		    long start=System.nanoTime();
+		    result[way]=opt.search();
+		    time[way][solving ? 1 : 0]+=System.nanoTime()-start;
+		    nodes[way][solving ? 1 : 0]+=opt.nodes;
+		}
+		if(result[0][3]!=result[1][3] || result[0][3]!=result[2][3]) scores++;
+		pos.makeMove(result[0][0],result[0][1]);
+	    }
+	}
+	System.out.println("                           midgame nodes     ms   endgame nodes     ms");
+	for(int way=0;way<3;way++){
+	    String name=names[way];
+	    while(name.length()<22) name+=" ";
+	    System.out.println("  "+name+pad(nodes[way][0],16)+pad(time[way][0]/1000000,7)+
+			       pad(nodes[way][1],16)+pad(time[way][1]/1000000,7));
+	}
+	System.out.println("  positions where the scores differ: "+scores+
+			   " (deeper results from the table)");
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                              timed games                               */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchClock(int games,int seconds,int increment,int depth) throws Exception {
+	System.out.println(games+" games, "+seconds+" s each"+
+			   ((increment>0) ? " + "+increment+" ms a move" : "")+", with solving");
+	OthSessionManager manager=new OthSessionManager(1,4);
+	for(int way=0;way<2;way++){
+	    long used=0,worstOver=0;
+	    int flagged=0,moves=0,depths=0,midgameMoves=0,earlySolves=0;
+	    Random r=new Random(5);
+	    for(int g=0;g<games;g++){
+		// one session for each side, both kept at the same position
+		OthSessionManager.Session side[]={manager.newSession(),manager.newSession()};
+		long left[]={seconds*1000L,seconds*1000L};
+		for(int i=0;i<2;i++){
+		    if(way==0){
+			side[i].setDepth(depth);
+			side[i].setTimeLimit(3600000);
+		    }
+		    else side[i].setClock(left[i],increment);
+		}
+		for(int i=0;i<8;i++){ // random opening
+		    long m=side[0].getPosition().legalMoves();
+		    int pick=r.nextInt(Long.bitCount(m));
+		    for(int j=0;j<pick;j++) m&=m-1;
+		    int sq=Long.numberOfTrailingZeros(m);
+		    side[0].makeMove(1+(sq&7),1+(sq>>3));
+		    side[1].makeMove(1+(sq&7),1+(sq>>3));
+		}
+		while(side[0].getPosition().whoseMove!=0){
+		    int i=(side[0].getPosition().whoseMove==BLACK) ? 0 : 1;
+		    int empties=side[i].getPosition().countEmpty();
+		    long hard=(way==1) ? side[i].getClock().hardLimit(empties) : 0;
+		    long t=System.currentTimeMillis();
+		    int move[]=(int[])manager.requestMove(side[i]).get();
+		    t=System.currentTimeMillis()-t;
+		    left[i]+=increment-t;
+		    used+=t;
+		    moves++;
+		    if(way==1){
+			worstOver=Math.max(worstOver,t-hard);
+			if(move[4]==60 && empties>=new OthPlayerThread().solveDepth) earlySolves++;
+			if(move[4]<60){depths+=move[4]; midgameMoves++;}
+		    }
+		    side[0].makeMove(move[0],move[1]);
+		    side[1].makeMove(move[0],move[1]);
+		}
+		for(int i=0;i<2;i++){
+		    if(left[i]<0) flagged++;
+		    manager.closeSession(side[i]);
+		}
+	    }
+	    System.out.println((way==0) ? "  depth "+depth+":" : "  clock:");
+	    System.out.println("    "+moves+" moves, "+(used/1000)+" s used of "+(2L*games*seconds+moves*increment/1000)+
+			       ", ran out of time in "+flagged+" of "+(2*games)+" games");
+	    if(way==1){
+		System.out.println("    average midgame depth "+
+				   ((midgameMoves>0) ? ""+(depths*10/midgameMoves)/10.0 : "-")+
+				   ", solved early "+earlySolves+" times, worst "+worstOver+
+				   " ms past the hard limit");
+	    }
+	}
+	manager.shutdown();
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                           stopping a search                            */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchStop(int n,int empties) throws Exception {
+	System.out.println("Stopping "+n+" searches of each kind after 50-500 ms");
+	OthPosition positions[]=randomPositions(n,empties,13);
+	Random r=new Random(13);
+	for(int way=0;way<2;way++){
+	    long total=0,worst=0,joinWorst=0;
+	    int stopped=0,partial=0;
+	    for(int i=0;i<n;i++){
+		final OthPlayerThread opt=(way==0) ? player(positions[i],20,true) :
+		    player(positions[i],20,false);
+		final int move[][]=new int[1][];
+		long delay=50+r.nextInt(451);
+		Thread t=new Thread(){
+			public void run(){move[0]=opt.search();}
+		    };
+		if(way==1) opt.setDeadline(System.nanoTime()+delay*1000000L);
+		t.start();
+		if(way==0){
+		    t.join(delay);
+		    opt.stopit();
+		}
+		long start=System.nanoTime();
+		t.join();
+		long join=System.nanoTime()-start;
+		long latency=opt.getStopLatency();
+		if(latency<0) continue; // finished before it was stopped
+		stopped++;
+		if(move[0]!=null){
+		    if(way==0 || !opt.isPartial()) throw new Exception("A stopped search gave a move as if finished");
+		    partial++;
+		}
+		total+=latency;
+		worst=Math.max(worst,latency);
+		if(way==0) joinWorst=Math.max(joinWorst,join);
+	    }
+	    System.out.println(((way==0) ? "  stopit(), solving "+empties+" empties:" : 
+				"  deadline, depth 20:")+" "+stopped+" stopped, latency "+
+			       (total/Math.max(1,stopped)/1000)+" us on average, "+(worst/1000)+
+			       " us at worst"+((way==0) ? " ("+(joinWorst/1000)+" us to join)" :
+					       ", "+partial+" with a move from the root moves finished"));
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                               endgames                                 */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchEndgame(int n,int empties){
+	OthPosition pos[]=endgamePositions(n,empties,17);
+	System.out.println("Endgame solving, "+n+" positions with "+empties+" empty squares");
+	System.out.println("  ordering          WLD nodes       ms    exact nodes       ms");
+	for(int i=0;i<n;i++) player(pos[i],1,true).search(); // warm up the JIT
+	int depths[]={0,2,4,6};
+	int wld[][]=new int[depths.length][],exact[][]=new int[depths.length][];
+	for(int k=0;k<depths.length;k++){
+	    long nodes[]=new long[2],time[]=new long[2];
+	    wld[k]=new int[n]; exact[k]=new int[n];
+	    for(int i=0;i<n;i++){
+		for(int kind=0;kind<2;kind++){
+		    int board[][]=new int[10][10];
+		    pos[i].toArray(board);
+		    OthPlayerThread opt=new OthPlayerThread();
+		    opt.setAnalysing(true);
+		    opt.setSolveDepth(pos[i].countEmpty()+((kind==0) ? 1 : 2));
+		    opt.setEndgameOrdering(depths[k]);
+		    opt.setup(board,pos[i].whoseMove,1,true);
+		    long start=System.nanoTime();
+		    int move[]=opt.search();
+		    time[kind]+=System.nanoTime()-start;
+		    nodes[kind]+=opt.nodes;
+		    if(kind==0) wld[k][i]=move[3];
+		    else exact[k][i]=move[3];
+		}
+	    }
+	    System.out.println("  "+((depths[k]==0) ? "none   " : "depth "+depths[k])+
+			       pad(nodes[0],18)+pad(time[0]/1000000,9)+
+			       pad(nodes[1],15)+pad(time[1]/1000000,9));
+	}
+
+	// The solves must agree on the exact scores, and a win/loss/draw solve
+	// must have found the result of the best move (so a move which does as well)
+
+	int wrong=0;
+	for(int k=0;k<depths.length;k++){
+	    for(int i=0;i<n;i++){
+		if(exact[k][i]!=exact[0][i] || Math.max(-1,Math.min(1,wld[k][i]))!=
+		   Math.max(-1,Math.min(1,exact[0][i]))) wrong++;
+	    }
+	}
+
+	// Exact solves again, each with a new transposition table
+
+	System.out.println("  with a table         nodes       ms       probed     cutoffs");
+	for(int etc=0;etc<2;etc++){
+	    long nodes=0,time=0,probes=0,cuts=0;
+	    for(int i=0;i<n;i++){
+		int board[][]=new int[10][10];
+		pos[i].toArray(board);
+		OthPlayerThread opt=new OthPlayerThread();
+		opt.setAnalysing(true);
+		opt.setSolveDepth(pos[i].countEmpty()+2);
+		opt.setHashTable(new OthHashTable(OthPlayerThread.HASH_BITS));
+		opt.setEnhancedCutoffs(etc==1);
+		opt.setup(board,pos[i].whoseMove,1,true);
+		long start=System.nanoTime();
+		int move[]=opt.search();
+		time+=System.nanoTime()-start;
+		nodes+=opt.nodes; probes+=opt.etcProbes; cuts+=opt.etcCuts;
+		if(move[3]!=exact[0][i]) wrong++;
+	    }
+	    System.out.println("  "+((etc==0) ? "no ETC " : "ETC    ")+pad(nodes,18)+pad(time/1000000,9)+
+			       pad(probes,13)+pad(cuts,12));
+	}
+	System.out.println("  results which disagree: "+wrong);
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                   transposition tables on and off the heap             */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchTables(int n,int empties,int bits){
+	OthPosition pos[]=endgamePositions(n,empties,17);
+	System.out.println("Transposition tables of "+(16L<<bits>>20)+"MB, "+n+" exact solves with "+
+			   empties+" empty squares");
+	System.out.println("                     nodes       ms  heap MB  collections  GC ms");
+	for(int i=0;i<n;i++) player(pos[i],1,true).search(); // warm up the JIT
+	int scores[][]=new int[2][];
+	for(int way=0;way<2;way++){
+	    OthHashTable table=null;
+	    System.gc();
+	    long heap=usedHeap();
+	    try{
+		table=(way==0) ? new OthHashTable(bits) : new OthDirectHashTable(bits);
+	    }
+	    catch(OutOfMemoryError e){
+		System.out.println("  "+((way==0) ? "heap  " : "direct")+"  table doesn't fit");
+		continue;
+	    }
+	    heap=usedHeap()-heap;
+	    scores[way]=new int[n];
+	    long gcs=collections(),gcTime=collectionTime();
+	    long nodes=0,time=0;
+	    for(int i=0;i<n;i++){
+		table.clear();
+		int board[][]=new int[10][10];
+		pos[i].toArray(board);
+		OthPlayerThread opt=new OthPlayerThread();
+		opt.setAnalysing(true);
+		opt.setSolveDepth(pos[i].countEmpty()+2);
+		opt.setHashTable(table);
+		opt.setup(board,pos[i].whoseMove,1,true);
+		long start=System.nanoTime();
+		scores[way][i]=opt.search()[3];
+		time+=System.nanoTime()-start;
+		nodes+=opt.nodes;
+	    }
+	    System.out.println("  "+((way==0) ? "heap  " : "direct")+pad(nodes,16)+pad(time/1000000,9)+
+			       pad(heap>>20,9)+pad(collections()-gcs,13)+pad(collectionTime()-gcTime,7));
+	}
+	if(scores[0]!=null && scores[1]!=null){
+	    int wrong=0;
+	    for(int i=0;i<n;i++) if(scores[0][i]!=scores[1][i]) wrong++;
+	    System.out.println("  results which disagree: "+wrong);
+	}
+    }
+
+    static long usedHeap(){
+	Runtime r=Runtime.getRuntime();
+	return r.totalMemory()-r.freeMemory();
+    }
+
+    static long collections(){
+	long count=0;
+	Iterator<GarbageCollectorMXBean> i=ManagementFactory.getGarbageCollectorMXBeans().iterator();
+	while(i.hasNext()) count+=i.next().getCollectionCount();
+	return count;
+    }
+
+    static long collectionTime(){
+	long ms=0;
+	Iterator<GarbageCollectorMXBean> i=ManagementFactory.getGarbageCollectorMXBeans().iterator();
+	while(i.hasNext()) ms+=i.next().getCollectionTime();
+	return ms;
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                      a table shared by many threads                    */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchShared(final int threads,final int millions) throws InterruptedException {
+	System.out.println("Transposition tables shared by "+threads+" threads");
+
+	// Stress: a small table, so that threads keep writing the same entries at
+	// once, and data which follows from the key, so that every hit can be checked
+
+	final OthHashTable stressed[]={new OthSharedHashTable(10),new OthHashTable(10)};
+	for(int way=0;way<2;way++){
+	    final OthHashTable table=stressed[way];
+	    final long counts[]=new long[2]; // hits, wrong hits
+	    runThreads(threads,new Work(){
+		    public void run(int t){
+			long x=t+1,hits=0,wrong=0;
+			for(int i=0;i<1000000;i++){
+			    x^=x<<13; x^=x>>>7; x^=x<<17;
+			    long key=stressKey((int)(x & 4095));
+			    long entry=table.probe(key);
+			    if(entry!=0){
+				hits++;
+				if(entry!=stressData(key)) wrong++;
+			    }
+			    else table.store(key,(int)(key>>>24 & 63),lowerOf(key),lowerOf(key)+1,
+					     (int)(key>>>30 & 127));
+			}
+			synchronized(counts){counts[0]+=hits; counts[1]+=wrong;}
+		    }});
+	    System.out.println("  "+((way==0) ? "OthSharedHashTable" : "OthHashTable      ")+
+			       pad(counts[0],12)+" hits, "+counts[1]+" with the wrong data");
+	}
+
+	// Searches: every thread solves the same endgames, all with the one table
+
+	final OthPosition pos[]=endgamePositions(8,14,17);
+	final int expected[]=new int[pos.length];
+	for(int i=0;i<pos.length;i++) expected[i]=solve(pos[i],null);
+	final OthSharedHashTable shared=new OthSharedHashTable(OthPlayerThread.HASH_BITS);
+	final int wrong[]=new int[1];
+	long start=System.nanoTime();
+	runThreads(threads,new Work(){
+		public void run(int t){
+		    for(int k=0;k<pos.length;k++){
+			int i=(t+k)%pos.length; // not all in the same order
+			if(solve(pos[i],shared)!=expected[i]){
+			    synchronized(wrong){wrong[0]++;}
+			}
+		    }
+		}});
+	System.out.println("  "+threads*pos.length+" exact solves with 14 empties sharing a table in "+
+			   (System.nanoTime()-start)/1000000+" ms, "+wrong[0]+" wrong");
+
+	// Throughput: probe a random position, and store it if it wasn't there
+
+	System.out.println("  millions a second       1 thread"+pad(threads,6)+" threads");
+	String names[]={"OthSharedHashTable","striped locks     "};
+	for(int way=0;way<2;way++){
+	    String line="  "+names[way];
+	    for(int n=1;n<=threads;n+=Math.max(1,threads-1)){
+		final OthHashTable table=(way==0) ? (OthHashTable)new OthSharedHashTable(20) :
+		    new StripedTable(20);
+		runThreads(n,probeStore(table,millions*250000)); // warm up
+		start=System.nanoTime();
+		runThreads(n,probeStore(table,millions*1000000));
+		long tenths=n*millions*10000000000L/(System.nanoTime()-start);
+		line+=pad(tenths/10,12)+"."+tenths%10;
+		if(threads==1) break;
+	    }
+	    System.out.println(line);
+	}
+    }
+
+    interface Work{
+	void run(int thread);
+    }
+
+    /** Runs work on the given number of threads at once, and waits for them */
+    static void runThreads(int n,final Work work) throws InterruptedException {
+	Thread t[]=new Thread[n];
+	for(int i=0;i<n;i++){
+	    final int id=i;
+	    t[i]=new Thread(){
+		    public void run(){work.run(id);}
+		};
+	}
+	for(int i=0;i<n;i++) t[i].start();
+	for(int i=0;i<n;i++) t[i].join();
+    }
+
+    static Work probeStore(final OthHashTable table,final int ops){
+	return new Work(){
+		public void run(int t){
+		    long x=0x9e3779b97f4a7c15L*(t+1);
+		    for(int i=0;i<ops;i++){
+			x^=x<<13; x^=x>>>7; x^=x<<17;
+			long key=x & 0x3fffff; // 4 times the positions the table holds
+			key*=0x9e3779b97f4a7c15L;
+			if(table.probe(key)==0) table.store(key,(int)(key>>>58),0,1,0);
+		    }
+		}};
+    }
+
+    // A key for stress test position i, and the data which goes with it
+    static long stressKey(int i){return (i+1)*0x9e3779b97f4a7c15L;}
+    static int lowerOf(long key){return (int)(key & 0xffff)-32768;}
+    static long stressData(long key){
+	return OthHashTable.pack(lowerOf(key),lowerOf(key)+1,(int)(key>>>24 & 63),(int)(key>>>30 & 127));
+    }
+
+    static int solve(OthPosition pos,OthHashTable table){
+	int board[][]=new int[10][10];
+	pos.toArray(board);
+	OthPlayerThread opt=new OthPlayerThread();
+	opt.setAnalysing(true);
+	opt.setSolveDepth(pos.countEmpty()+2);
+	opt.setHashTable(table);
+	opt.setup(board,pos.whoseMove,1,true);
+	return opt.search()[3];
+    }
+
+    /** For comparison: a table with a lock for each of STRIPES groups of slots
+	(entries as OthHashTable) */
+    static class StripedTable extends OthHashTable{
+	static final int STRIPES=64;
+	long keys[],data[];
+	int mask;
+	Object locks[]=new Object[STRIPES];
+
+	StripedTable(int bits){
+	    keys=new long[1<<bits];
+	    data=new long[1<<bits];
+	    mask=(1<<bits)-1;
+	    for(int i=0;i<STRIPES;i++) locks[i]=new Object();
+	}
+
+	public long probe(long key){
+	    int i=(int)key & mask & ~1;
+	    synchronized(locks[(i>>1) & (STRIPES-1)]){
+		if(keys[i]==key) return data[i];
+		if(keys[i+1]==key) return data[i+1];
+		return 0;
+	    }
+	}
+
+	public void store(long key,int depth,int lower,int upper,int move){
+	    int i=(int)key & mask & ~1;
+	    synchronized(locks[(i>>1) & (STRIPES-1)]){
+		if(keys[i]!=key){
+		    if(keys[i+1]==key) i++;
+		    else if(depth>=depth(data[i])){
+			keys[i+1]=keys[i];
+			data[i+1]=data[i];
+		    }
+		    else i++;
+		}
+		long old=data[i];
+		if(keys[i]==key && depth(old)==depth){
+		    int l=Math.max(lower,lower(old)),u=Math.min(upper,upper(old));
+		    if(l<=u){lower=l; upper=u;}
+		    if(move==0) move=move(old);
+		}
+		keys[i]=key;
+		data[i]=pack(lower,upper,depth,move);
+	    }
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                        evaluating many positions                       */
+    /* ---------------------------------------------------------------------- */
+
+    static final int WARM_UP=5; // rounds, for the Vector API's code to be compiled
+
+    static void benchBatch(int n,int rounds){
+	System.out.println("Evaluating "+n+" positions, "+rounds+" times each way");
+	OthPosition pos[]=new OthPosition[n];
+	for(int e=0;e<5;e++){ // 10 to 50 empty squares
+	    int from=n*e/5,to=n*(e+1)/5;
+	    OthPosition some[]=randomPositions(to-from,10+10*e,21+e);
+	    System.arraycopy(some,0,pos,from,to-from);
+	}
+
+	OthBatchEval batches[]={new OthBatchEval(n),OthBatchEval.create(n)};
+	if(batches[1].getClass()==OthBatchEval.class){
+	    System.out.println("  (no Vector API: see README.md)");
+	    batches=new OthBatchEval[]{batches[0]};
+	}
+	for(int k=0;k<batches.length;k++){
+	    for(int i=0;i<n;i++) batches[k].add(pos[i]);
+	}
+
+	// one at a time, as the search would, from a board array each
+
+	OthPlayerThread opt=new OthPlayerThread();
+	int board[][]=new int[10][10];
+	int single[]=new int[n];
+	long time=0;
+	for(int round=-WARM_UP;round<rounds;round++){ // the first few warm up the JIT
+	    long start=System.nanoTime();
+	    for(int i=0;i<n;i++){
+		pos[i].toArray(board);
+		single[i]=opt.evaluate(board);
+	    }
+	    if(round>=0) time+=System.nanoTime()-start;
+	}
+	System.out.println("  one at a time (assess())            "+pad(n*rounds*1000000000L/Math.max(1,time),11)+
+			   " positions/s");
+
+	for(int k=0;k<batches.length;k++){
+	    OthBatchEval batch=batches[k];
+	    time=0;
+	    for(int round=-WARM_UP;round<rounds;round++){
+		long start=System.nanoTime();
+		batch.evaluate();
+		if(round>=0) time+=System.nanoTime()-start;
+	    }
+	    int wrong=0;
+	    for(int i=0;i<n;i++) if(batch.getScore(i)!=single[i]) wrong++;
+	    String name="OthBatchEval ("+batch.getKind()+")";
+	    while(name.length()<36) name+=" ";
+	    System.out.println("  "+name+pad(n*rounds*1000000000L/Math.max(1,time),11)+
+			       " positions/s, "+wrong+" scores differ");
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                          allocation per search                         */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchAlloc(int n,int depth){
+	ThreadMXBean mx=ManagementFactory.getThreadMXBean();
+	if(!(mx instanceof com.sun.management.ThreadMXBean) ||
+	   !((com.sun.management.ThreadMXBean)mx).isThreadAllocatedMemorySupported()){
+	    System.out.println("This JVM can't measure allocation by thread");
+	    return;
+	}
+	com.sun.management.ThreadMXBean threads=(com.sun.management.ThreadMXBean)mx;
+	long id=Thread.currentThread().getId();
+	System.out.println("Allocation, "+n+" midgame searches at depth "+depth);
+	String names[]={"new player and storage","new player","player used again"};
+	OthPosition pos[]=randomPositions(n,40,9);
+	int boards[][][]=new int[n][10][10];
+	for(int i=0;i<n;i++) pos[i].toArray(boards[i]);
+	OthPlayerThread reused=new OthPlayerThread();
+	reused.setAnalysing(true);
+	int move[]=new int[4];
+
+	for(int round=0;round<2;round++){ // the first is to warm up
+	    for(int way=0;way<3;way++){
+		long bytes=threads.getThreadAllocatedBytes(id);
+		long start=System.nanoTime();
+		for(int i=0;i<n;i++){
+		    if(way<2){
+			OthPlayerThread opt=new OthPlayerThread();
+			opt.setAnalysing(true);
+			if(way==0) opt.setContext(new OthSearchContext());
+			opt.setup(boards[i],pos[i].whoseMove,depth,false);
+			opt.search(move);
+		    }
+		    else{
+			reused.setup(boards[i],pos[i].whoseMove,depth,false);
+			reused.search(move);
+		    }
+		}
+		long time=System.nanoTime()-start;
+		bytes=threads.getThreadAllocatedBytes(id)-bytes;
+		if(round==0) continue;
+		String name=names[way];
+		while(name.length()<24) name+=" ";
+		System.out.println("  "+name+pad(bytes/n,8)+" bytes/search"+
+				   pad(n*1000000000L/Math.max(1,time),9)+" searches/s");
+	    }
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                              board drawing                             */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchPaint(int games,int size){
+	OthPanel panel=new OthPanel();
+	panel.setSize(size,size);
+	BufferedImage full=new BufferedImage(size,size,BufferedImage.TYPE_INT_RGB);
+	BufferedImage cached=new BufferedImage(size,size,BufferedImage.TYPE_INT_RGB);
+	Random r=new Random(1);
+	long time[]=new long[2];
+	long moves=0,area=0;
+
+	for(int pass=0;pass<2;pass++){ // the first pass just warms up
+	    time[0]=time[1]=0;
+	    moves=area=0;
+	    for(int g=0;g<games;g++){
+		panel.initPanel();
+		OthPosition pos=new OthPosition();
+		while(pos.whoseMove!=0){
+		    long legal=pos.legalMoves();
+		    int pick=r.nextInt(Long.bitCount(legal));
+		    for(int j=0;j<pick;j++) legal&=legal-1;
+		    int sq=Long.numberOfTrailingZeros(legal);
+		    long before=pos.black|pos.white,legalBefore=pos.legalMoves();
+		    pos.makeMove(1+(sq&7),1+(sq>>3));
+		    panel.tryMove(1+(sq&7),1+(sq>>3));
+
+		    // what the panel repaints: the changed squares and the legal
+		    // move markers, merged into one rectangle as Swing does
+
+		    long dirty=(before^(pos.black|pos.white))|(pos.black&before)|
+			legalBefore|pos.legalMoves();
+		    Rectangle clip=null;
+		    for(long d=dirty;d!=0;d&=d-1){
+			int i=Long.numberOfTrailingZeros(d);
+			Rectangle sqr=panel.squareBounds(1+(i&7),1+(i>>3));
+			clip=(clip==null) ? sqr : clip.union(sqr);
+		    }
+
+		    panel.setCachedRendering(false);
+		    Graphics2D gr=(Graphics2D)full.getGraphics();
+		    gr.setBackground(panel.getBackground()); // as Swing's Graphics would
+		    long start=System.nanoTime();
+		    panel.paintComponent(gr);
+		    time[0]+=System.nanoTime()-start;
+		    gr.dispose();
+
+		    panel.setCachedRendering(true);
+		    gr=(Graphics2D)cached.getGraphics();
+		    gr.setBackground(panel.getBackground());
+		    gr.setClip(clip);
+		    start=System.nanoTime();
+		    panel.paintComponent(gr);
+		    time[1]+=System.nanoTime()-start;
+		    gr.dispose();
+
+		    moves++;
+		    area+=clip.width*clip.height;
+		}
+
+		// the two ways of drawing should give the same picture
+
+		Graphics2D gr=(Graphics2D)cached.getGraphics();
+		gr.setBackground(panel.getBackground());
+		panel.paintComponent(gr);
+		gr.dispose();
+		for(int x=0;x<size;x++){
+		    for(int y=0;y<size;y++){
+			if(full.getRGB(x,y)!=cached.getRGB(x,y)){
+			    System.out.println("Error: cached drawing differs at "+x+","+y+" in game "+g);
+			    return;
+			}
+		    }
+		}
+	    }
+	}
+	System.out.println("Board repaints after "+moves+" moves of "+games+" random games, "+
+			   size+"x"+size+" pixels");
+	System.out.println("  everything:      "+(time[0]/moves/1000)+" us per move");
+	System.out.println("  changed squares: "+(time[1]/moves/1000)+" us per move, "+
+			   (area*100/(moves*size*size))+"% of the board on average");
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                          the server, on localhost                      */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchServer() throws Exception {
+	OthServer server=new OthServer(0,1);
+	server.start();
+	String base="http://localhost:"+server.getPort();
+	String start="---------------------------OX------XO---------------------------";
+	int failed=0;
+	try{
+	    String r[]=http(base+"/move?board="+start+"&player=X&depth=4",null);
+	    failed+=check("/move",r,"200","\"move\":\"");
+	    r=http(base+"/stream?board="+start+"&player=O&depth=4",null);
+	    failed+=check("/stream",r,"200","event: move");
+	    failed+=check("/stream progress",r,"200","event: progress");
+	    r=http(base+"/move?board=XO",null);
+	    failed+=check("short board",r,"400","\"error\"");
+	    r=http(base+"/move","board="+start+"&depth=%zz");
+	    failed+=check("malformed body",r,"400","\"error\"");
+	    r=http(base+"/move?board="+start+"&depth=six",null);
+	    failed+=check("depth not a number",r,"400","\"error\"");
+	    r=new String[]{"200",OthServer.quote("two\nlines\u0001")}; // no request
+	    failed+=check("control characters",r,"200","\"two\\nlines\\u0001\"");
+	}
+	finally{
+	    server.stop();
+	}
+	System.out.println((failed==0) ? "All passed" : failed+" failed");
+    }
+
+    static int check(String name,String result[],String status,String expected){
+	boolean ok=result[0].equals(status) && result[1].indexOf(expected)>=0;
+	String line="  "+name;
+	while(line.length()<24) line+=" ";
+	String text=result[1].replace('\n',' ').trim();
+	if(text.length()>60) text=text.substring(0,57)+"...";
+	System.out.println(line+(ok ? "ok   " : "FAIL ")+result[0]+" "+text);
+	return ok ? 0 : 1;
+    }
+
+    /** GETs the url, or POSTs body to it if body isn't null.  Returns the status
+	and the response body. */
+    static String[] http(String url,String body) throws IOException {
+	HttpURLConnection c=(HttpURLConnection)new URL(url).openConnection();
+	if(body!=null){
+	    c.setDoOutput(true);
+	    c.setRequestProperty("Content-Type","application/x-www-form-urlencoded");
+	    OutputStream out=c.getOutputStream();
+	    out.write(body.getBytes("UTF-8"));
+	    out.close();
+	}
+	int status=c.getResponseCode();
+	InputStream in=(status<400) ? c.getInputStream() : c.getErrorStream();
+	StringBuffer sb=new StringBuffer();
+	if(in!=null){
+	    Reader r=new InputStreamReader(in,"UTF-8");
+	    char buf[]=new char[1024];
+	    int n;
+	    while((n=r.read(buf))>0) sb.append(buf,0,n);
+	    r.close();
+	}
+	return new String[]{""+status,sb.toString()};
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                        many games at once                              */
+    /* ---------------------------------------------------------------------- */
+
+    static void benchSessions(int games,int depth,final int limit,int threads) throws Exception {
+	final OthSessionManager manager=new OthSessionManager(threads,games);
+
+	// memory: make lots of sessions and see how much the heap grows, then
+	// again once each has had a computer move (and so has its game memory)
+
+	int n=10000;
+	Runtime rt=Runtime.getRuntime();
+	System.gc(); System.gc();
+	long before=rt.totalMemory()-rt.freeMemory();
+	OthSessionManager.Session spare[]=new OthSessionManager.Session[n];
+	for(int i=0;i<n;i++) spare[i]=manager.newSession();
+	System.gc(); System.gc();
+	long after=rt.totalMemory()-rt.freeMemory();
+	System.out.println(n+" sessions: about "+(after-before)/n+" bytes each");
+	for(int i=0;i<n;i++){
+	    spare[i].setDepth(2);
+	    manager.playComputerMove(spare[i]);
+	}
+	System.gc(); System.gc();
+	after=rt.totalMemory()-rt.freeMemory();
+	System.out.println("  after a computer move in each: about "+(after-before)/n+" bytes each");
+	for(int i=0;i<n;i++) manager.closeSession(spare[i]);
+	spare=null;
+
+	// play games, one client thread per game, all sharing the manager's pool
+
+	final long stats[]=new long[3]; // moves, total ms, worst ms
+	Thread clients[]=new Thread[games];
+	long start=System.currentTimeMillis();
+	for(int g=0;g<games;g++){
+	    final OthSessionManager.Session session=manager.newSession();
+	    session.setDepth(depth);
+	    session.setTimeLimit(limit);
+	    session.setSolving(false);
+	    clients[g]=new Thread(){
+		    public void run(){
+			try{
+			    while(session.getPosition().whoseMove!=0){
+				long t=System.currentTimeMillis();
+				if(manager.playComputerMove(session)==null) break;
+				t=System.currentTimeMillis()-t;
+				synchronized(stats){
+				    stats[0]++; stats[1]+=t; stats[2]=Math.max(stats[2],t);
+				}
+			    }
+			}
+			catch(Exception e){
+			    System.out.println("Error: "+e);
+			}
+		    }};
+	    clients[g].start();
+	}
+	for(int g=0;g<games;g++) clients[g].join();
+	long time=System.currentTimeMillis()-start;
+	manager.shutdown();
+
+	System.out.println(games+" games at depth "+depth+", "+limit+" ms a move, "+threads+
+			   " search threads: "+stats[0]+" moves in "+time+" ms");
+	System.out.println("  "+(stats[0]*1000/Math.max(1,time))+" moves/s; waiting for a move "+
+			   (stats[1]/Math.max(1,stats[0]))+" ms on average, "+stats[2]+" ms at worst");
+    }
+
+    static String pad(long n,int width){
+	String s=""+n;
+	while(s.length()<width) s=" "+s;
+	return s;
+    }
+
+} // end of class OthBench
@@ -0,0 +1,92 @@
+/*
+  File: OthClock.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - a player's clock in a timed game, and how
+                               much of it to spend on each move
+*/
+
+/**
+  * One player's clock in a timed game: the time left, and the increment added
+  * after each move (0 for sudden death).  It decides how long the computer
+  * should think about each move.
+  *
+  * The time left is shared out over the moves the player still has to make,
+  * estimated from the number of empty squares.  The last few moves of a game
+  * are solved almost at once, so no time is set aside for them.  Each move
+  * gets two limits: a soft one, which the search aims for (it doesn't start a
+  * depth it probably can't finish by then, and may run over it a little if the
+  * best move keeps changing), and a hard one, at which it is stopped whatever
+  * it is doing.  The hard limit is never more than half the time left.
+  *
+  * The clock also says how many empty squares can be solved in the time, so
+  * that the endgame is solved sooner when there is time in hand, and later when
+  * time is short.  That estimate is for a machine like the one OthBench was run
+  * on (a 14 empty solve in about a second); it only decides when to try, as a
+  * solve which runs out of time falls back to the midgame search's move.
+  *
+  * All times are in milliseconds.
+  *
+  * @(#)OthClock.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthSessionManager.java
+  */
+
+public class OthClock{
+
+    static final long MARGIN=100;         // kept back for overheads and lag
+    static final int INSTANT_EMPTIES=8;   // moves this near the end take no time
+    static final double SOLVE_MS=1000;    // rough time to solve 14 empty squares,
+    static final double SOLVE_GROWTH=2.4; // and how much longer for each one more
+
+    private long remaining,increment;
+
+    public OthClock(long remaining,long increment){
+	this.remaining=remaining;
+	this.increment=increment;
+    }
+
+    public synchronized long getRemaining(){return remaining;}
+    public synchronized long getIncrement(){return increment;}
+
+    /** Sets the clock, e.g. from the game's real clock before each move */
+    public synchronized void set(long remaining,long increment){
+	this.remaining=remaining;
+	this.increment=increment;
+    }
+
+    /** Takes off the time a move took, and adds the increment */
+    public synchronized void used(long ms){
+	remaining+=increment-ms;
+    }
+
+    /** Our moves still to come (roughly half the empty squares), leaving out
+	the last few, which are solved almost at once */
+    static int movesLeft(int empties){
+	return Math.max(2,(empties-INSTANT_EMPTIES+1)/2);
+    }
+
+    /** Time to aim for on a move with the given number of empty squares */
+    public synchronized long softLimit(int empties){
+	long usable=Math.max(0,remaining-MARGIN);
+	long soft=usable/movesLeft(empties)+increment*3/4;
+	return Math.min(soft,hardLimit(empties));
+    }
+
+    /** Time at which the search must stop */
+    public synchronized long hardLimit(int empties){
+	long usable=Math.max(0,remaining-MARGIN);
+	long soft=usable/movesLeft(empties)+increment*3/4;
+	return Math.min(soft*4,usable/2+increment/2);
+    }
+
+    /** The most empty squares which can probably be solved within limit (with
+	time to spare, as solving times vary a lot).  The last few moves can
+	always be solved. */
+    public static int solveEmpties(long limit){
+	int e=INSTANT_EMPTIES;
+	while(e<40 && SOLVE_MS*Math.pow(SOLVE_GROWTH,e+1-14)<=limit/2) e++;
+	return e;
+    }
+
+} // end of class OthClock
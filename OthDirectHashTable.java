@@ -0,0 +1,126 @@
+/*
+  File: OthDirectHashTable.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - transposition table outside the Java heap,
+                               for tables of several GB
+*/
+
+import java.nio.*;
+
+/**
+  * A transposition table kept in direct (off-heap) buffers rather than Java
+  * arrays, so that it can be made as big as the machine's memory allows
+  * without a heap to match: the garbage collector never looks inside it, so a
+  * table of several GB costs nothing at each collection, and -Xmx need only be
+  * big enough for everything else.  It is used just as an OthHashTable (give it
+  * to setHashTable(), or have OthGameMemory make them).
+  *
+  * Entries are 16 bytes, the key then the data packed as in OthHashTable, in
+  * buckets of four: 64 bytes, one cache line, so a probe reads one line of
+  * memory however many entries it looks at.  A new position goes in the
+  * bucket's entry with the shallowest result (or an empty one), so the deep
+  * results, which saved the most work, are the last to go.  Results for the
+  * same position and depth are merged, as in OthHashTable.
+  *
+  * A ByteBuffer holds at most 2GB, so bigger tables are split into several of
+  * them, and each bucket is in just one.  The memory is only given back when
+  * the table is garbage collected, so make one table and clear() it between
+  * games rather than making a new one for each game.  The JVM limits direct
+  * memory to the heap's maximum size unless told otherwise, so give it
+  * -XX:MaxDirectMemorySize for a table bigger than the heap.
+  *
+  * @(#)OthDirectHashTable.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthHashTable.java
+  */
+
+public class OthDirectHashTable extends OthHashTable{
+
+    static final int ENTRY=16,BUCKET=4*ENTRY; // bytes
+    static final int CHUNK_BITS=24;            // buckets per buffer, 2^24 (1GB)
+
+    private ByteBuffer chunks[];
+    private long buckets;    // how many there are, a power of 2
+    private int chunkMask;   // bucket number within its buffer
+
+    /** A table with 2^bits entries, 16 bytes each (bits from 2 to 36) */
+    public OthDirectHashTable(int bits){
+	if(bits<2 || bits>36) throw new IllegalArgumentException("table size 2^"+bits+" entries");
+	buckets=1L<<(bits-2);
+	int chunkBits=Math.min(CHUNK_BITS,bits-2);
+	chunkMask=(1<<chunkBits)-1;
+	chunks=new ByteBuffer[(int)(buckets>>>chunkBits)];
+	for(int i=0;i<chunks.length;i++){
+	    // a little extra, so that the buckets can start on a cache line
+	    ByteBuffer b=ByteBuffer.allocateDirect((BUCKET<<chunkBits)+BUCKET);
+	    chunks[i]=b.alignedSlice(BUCKET).order(ByteOrder.nativeOrder());
+	}
+    }
+
+    /** A table of about the given number of megabytes (rounded down to a power
+	of 2, and at least 1MB) */
+    public static OthDirectHashTable megabytes(long mb){
+	int bits=16; // 1MB
+	while(bits<36 && (ENTRY<<(bits+1))<=mb<<20) bits++;
+	return new OthDirectHashTable(bits);
+    }
+
+    /** The number of entries (Integer.MAX_VALUE if there are more than that) */
+    public int size(){return (int)Math.min(Integer.MAX_VALUE,buckets*4);}
+
+    /** The size of the table in bytes */
+    public long bytes(){return buckets*BUCKET;}
+
+    /** Empties the table */
+    public void clear(){
+	byte zero[]=new byte[1<<16];
+	for(int i=0;i<chunks.length;i++){
+	    ByteBuffer b=chunks[i];
+	    for(int at=0;at<b.capacity();at+=zero.length){
+		b.put(at,zero,0,Math.min(zero.length,b.capacity()-at));
+	    }
+	}
+    }
+
+    /** The entry for a position, or 0 if there isn't one */
+    public long probe(long key){
+	probes++;
+	long bucket=key & (buckets-1);
+	ByteBuffer b=chunks[(int)(bucket>>>CHUNK_BITS)];
+	int at=((int)bucket & chunkMask)*BUCKET;
+	for(int end=at+BUCKET;at<end;at+=ENTRY){
+	    if(b.getLong(at)==key){hits++; return b.getLong(at+8);}
+	}
+	return 0;
+    }
+
+    /** Saves what is known about a position, as OthHashTable.store() */
+    public void store(long key,int depth,int lower,int upper,int move){
+	stores++;
+	long bucket=key & (buckets-1);
+	ByteBuffer b=chunks[(int)(bucket>>>CHUNK_BITS)];
+	int at=((int)bucket & chunkMask)*BUCKET;
+
+	// the position's own entry if it has one, else the shallowest (an empty
+	// entry counts as depth 0)
+	int to=at,shallowest=Integer.MAX_VALUE;
+	for(int end=at+BUCKET;at<end;at+=ENTRY){
+	    long k=b.getLong(at),d=b.getLong(at+8);
+	    if(k==key && d!=0){
+		if(depth(d)==depth){ // merge with what we knew already
+		    int l=Math.max(lower,lower(d)),u=Math.min(upper,upper(d));
+		    if(l<=u){lower=l; upper=u;}
+		    if(move==0) move=move(d);
+		}
+		to=at;
+		break;
+	    }
+	    int dd=(d==0) ? -1 : depth(d);
+	    if(dd<shallowest){shallowest=dd; to=at;}
+	}
+	b.putLong(to,key);
+	b.putLong(to+8,pack(lower,upper,depth,move));
+    }
+
+} // end of class OthDirectHashTable
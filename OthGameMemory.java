@@ -0,0 +1,136 @@
+/*
+  File: OthGameMemory.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - what the computer player keeps from one search
+                               to the next in the same game
+
+  19 Oct 26                    Tables outside the heap (OthDirectHashTable), cleared
+                               rather than made again for a new game
+
+  19 Oct 26                    Tables shared with other memories, so that many games can
+                               keep a memory without a table each
+*/
+
+/**
+  * What the computer player remembers between searches in one game, so that
+  * each search doesn't start from nothing: the transposition tables, a history
+  * table for ordering moves, and the principal variation (the line of play the
+  * last search expected).  A search to depth d has already looked at the
+  * replies to the opponent's likely answer, and the next search finds them in
+  * the table; if the opponent plays the expected move, the next search starts
+  * with the move the last one expected us to play.  Consecutive solves in the
+  * endgame overlap most of all.
+  *
+  * Endgame (solved) results and midgame results are kept in separate tables:
+  * midgame scores are estimates from a fixed depth, and solved ones are exact
+  * and on a different scale, so neither must be mistaken for the other.  The
+  * tables are made when first needed.
+  *
+  * Big tables can be kept outside the Java heap (see OthDirectHashTable).
+  * Those are made once and cleared for each new game.
+  *
+  * Or the tables can be given, and shared by the memories of many games, as
+  * a server playing many games at once would (see OthSessionManager).  Each
+  * memory then only holds its history table and principal variation, a
+  * kilobyte or two.  Searches from different games may use the tables at
+  * the same time if they are OthSharedHashTables.  reset() leaves given
+  * tables alone, as other games are still using them.
+  *
+  * Give the same OthGameMemory to each OthPlayerThread in a game
+  * (setGameMemory()), and reset() it for a new game.  Only one search at a
+  * time may use it.
+  *
+  * @(#)OthGameMemory.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthPlayerThread.java
+  * @see OthHashTable.java
+  */
+
+public class OthGameMemory{
+
+    private int bits;                  // size of the tables, 2^bits entries
+    private boolean direct;            // outside the heap?
+    private boolean given;             // tables shared with other memories?
+    private OthHashTable midgame,endgame;
+    int history[][]=new int[10][10];   // how often each square's move caused a cutoff
+    long pvKeys[]=new long[64];        // the principal variation: hash key (with the
+    int pvMoves[]=new int[64];         // player) of each position, and the move
+    int pvLength=0;                    // expected there (x*10+y)
+
+    /** A memory whose tables have 2^bits entries (16 bytes each) */
+    public OthGameMemory(int bits){
+	this.bits=bits;
+    }
+
+    /** A memory whose tables have 2^bits entries, in OthDirectHashTables if
+	direct is true */
+    public OthGameMemory(int bits,boolean direct){
+	this.bits=bits;
+	this.direct=direct;
+    }
+
+    /** A memory using the given tables, which other memories may share */
+    public OthGameMemory(OthHashTable midgame,OthHashTable endgame){
+	this.midgame=midgame;
+	this.endgame=endgame;
+	given=true;
+    }
+
+    /** A memory with tables of the size OthPlayerThread uses for MTD(f) */
+    public OthGameMemory(){
+	this(OthPlayerThread.HASH_BITS);
+    }
+
+    /** Forgets everything, for a new game.  A search still running with the old
+	tables (one which has been told to stop, say) can't upset the next one, as
+	new tables are made rather than the old ones cleared.  Direct tables are
+	cleared, as their memory would only be given back by the garbage
+	collector; anything a stopped search stores in them afterwards is still
+	true of its position.  Given tables are kept as they are. */
+    public synchronized void reset(){
+	if(!given){ // given tables are other games' too
+	    if(direct){
+		if(midgame!=null) midgame.clear();
+		if(endgame!=null) endgame.clear();
+	    }
+	    else midgame=endgame=null;
+	}
+	history=new int[10][10];
+	pvLength=0;
+    }
+
+    /** The table for solving, or for the midgame */
+    synchronized OthHashTable getTable(boolean solving){
+	if(solving){
+	    if(endgame==null) endgame=newTable();
+	    return endgame;
+	}
+	if(midgame==null) midgame=newTable();
+	return midgame;
+    }
+
+    private OthHashTable newTable(){
+	return direct ? new OthDirectHashTable(bits) : new OthHashTable(bits);
+    }
+
+    /** Called at the start of each search: older history counts are halved, so
+	that they follow the game as it changes. */
+    void startSearch(){
+	for(int x=1;x<9;x++){
+	    for(int y=1;y<9;y++){
+		history[x][y]>>=1;
+	    }
+	}
+    }
+
+    /** The move the principal variation expects in the position with the given
+	key, or 0 if it isn't on it */
+    int pvMove(long key){
+	for(int i=0;i<pvLength;i++){
+	    if(pvKeys[i]==key) return pvMoves[i];
+	}
+	return 0;
+    }
+
+} // end of class OthGameMemory
@@ -0,0 +1,153 @@
+/*
+  File: OthHashTable.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - transposition table for the computer player
+
+  19 Oct 26                    Two entries per slot, one kept for the deepest result, as
+                               the table now lasts for a whole game. 0.2
+
+  19 Oct 26                    Constructor for subclasses which keep their entries
+                               elsewhere (OthDirectHashTable); pack()
+*/
+
+import java.util.*;
+
+/**
+  * A transposition table: what the search has already found out about
+  * positions, by hash key, so that a position reached again (by a different
+  * order of moves, or by the next of a series of searches, as in MTD(f)) need
+  * not be searched again.
+  *
+  * Each entry holds a lower and an upper bound on the position's score, the
+  * depth they were found at and the best move found, packed into one long, with
+  * the full 64-bit key alongside to check for collisions.  The two arrays are
+  * the whole table, so there are no objects per entry for the garbage collector
+  * to look at.
+  *
+  * Entries go in pairs.  The first of a pair holds the deepest result (the
+  * most work saved), and the second whatever was stored last, so a long search
+  * can't push out the results near the root, but every new entry is kept for a
+  * while.  Results for the same position and depth are merged.
+  *
+  * Packing of an entry (0 means no entry, which can't happen otherwise):
+  *   bits 0-20 lower bound, 21-41 upper bound (both plus 2^20, so that scores
+  *   of +/-1000000 fit), 42-47 depth, 48-54 move (x*10+y as in the 10x10 board
+  *   array, 0 for none).
+  *
+  * @(#)OthHashTable.java 0.2 26/10/19
+  * @version 0.2 2026 October 19
+  * @see OthPlayerThread.java
+  * @see OthDirectHashTable.java
+  */
+
+public class OthHashTable{
+
+    static final int INFINITY=1000000; // beyond any score, as in OthPlayerThread
+    static final int OFFSET=1<<20;
+
+    private long keys[],data[];
+    private int mask;
+    long probes=0,hits=0,stores=0; // statistics
+
+    /** A table with 2^bits entries, 16 bytes each (bits at least 1) */
+    public OthHashTable(int bits){
+	keys=new long[1<<bits];
+	data=new long[1<<bits];
+	mask=(1<<bits)-1;
+    }
+
+    /** For subclasses which keep the entries themselves, overriding probe(),
+	store(), clear() and size() */
+    OthHashTable(){
+    }
+
+    public int size(){return keys.length;}
+
+    /** Empties the table */
+    public void clear(){
+	Arrays.fill(keys,0);
+	Arrays.fill(data,0);
+    }
+
+    /** The entry for a position, or 0 if there isn't one */
+    public long probe(long key){
+	probes++;
+	int i=(int)key & mask & ~1;
+	if(keys[i]==key){hits++; return data[i];}
+	if(keys[i+1]==key){hits++; return data[i+1];}
+	return 0;
+    }
+
+    /** Saves what is known about a position: its score is between lower and
+	upper (+/-INFINITY if unknown) when searched to the given depth, and move
+	is the best move found, or 0. */
+    public void store(long key,int depth,int lower,int upper,int move){
+	stores++;
+	int i=(int)key & mask & ~1;
+	if(keys[i]!=key){
+	    if(keys[i+1]==key) i++;
+	    else if(depth>=depth(data[i])){ // deepest so far: the old one moves over
+		keys[i+1]=keys[i];
+		data[i+1]=data[i];
+	    }
+	    else i++;
+	}
+	long old=data[i];
+	if(keys[i]==key && depth(old)==depth){ // merge with what we knew already
+	    int l=Math.max(lower,lower(old)),u=Math.min(upper,upper(old));
+	    if(l<=u){lower=l; upper=u;}
+	    if(move==0) move=move(old);
+	}
+	keys[i]=key;
+	data[i]=pack(lower,upper,depth,move);
+    }
+
+    static long pack(int lower,int upper,int depth,int move){
+	return (lower+OFFSET) | ((long)(upper+OFFSET)<<21) | ((long)depth<<42) | ((long)move<<48);
+    }
+
+    static int lower(long entry){return (int)(entry & 0x1fffff)-OFFSET;}
+    static int upper(long entry){return (int)(entry>>>21 & 0x1fffff)-OFFSET;}
+    static int depth(long entry){return (int)(entry>>>42 & 0x3f);}
+    static int move(long entry){return (int)(entry>>>48 & 0x7f);}
+
+    /* ---------------------------------------------------------------------- */
+    /*                               hash keys                                */
+    /* ---------------------------------------------------------------------- */
+
+    // Zobrist keys: a position's key is the exclusive or of a random number for
+    // each piece on the board (by colour and square), and another one if white
+    // is to move.  Making a move changes the key by the numbers for the new
+    // piece and for each flipped piece, so the search can keep it up to date
+    // as it goes.  Squares are indexed as the 10x10 board array.
+
+    static final long pieceKey[][][]=new long[2][10][10]; // [0] black, [1] white
+    static final long flipKey[][]=new long[10][10];       // black ^ white
+    static final long whiteToMove;
+
+    static{
+	Random r=new Random(0x4f7468656c6c6fL); // fixed, so keys are repeatable
+	for(int x=1;x<9;x++){
+	    for(int y=1;y<9;y++){
+		pieceKey[0][x][y]=r.nextLong();
+		pieceKey[1][x][y]=r.nextLong();
+		flipKey[x][y]=pieceKey[0][x][y]^pieceKey[1][x][y];
+	    }
+	}
+	whiteToMove=r.nextLong();
+    }
+
+    /** The key for a board array (10x10, as OthPlayerThread), without the player */
+    static long key(int array[][]){
+	long key=0;
+	for(int x=1;x<9;x++){
+	    for(int y=1;y<9;y++){
+		if(array[x][y]==1) key^=pieceKey[0][x][y];
+		else if(array[x][y]==-1) key^=pieceKey[1][x][y];
+	    }
+	}
+	return key;
+    }
+
+} // end of class OthHashTable
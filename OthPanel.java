@@ -10,10 +10,35 @@
 
   12 Oct 99  "                 Implemented Observer to communicate with computer player
                                instead of old tryComputerMove method. 
+
+  19 Oct 26                    The rules (legal moves, flips, passes) are now done by an
+                               OthPosition, shared with the computer player and the
+                               headless tools, instead of scanning the board array in
+                               every direction after each move. boardArray is kept as a
+                               copy for the computer player. 0.3
+
+  19 Oct 26                    Cached rendering (setCachedRendering()): each kind of
+                               square (empty, piece, legal move marker) is drawn once into
+                               an image, which is then just copied, and after a move only
+                               the squares which changed are repainted. 0.31
+
+  19 Oct 26                    Scalable board: the squares fit whatever size the panel is
+                               given, and the initial size allows for the screen
+                               resolution.  boardX()/boardY() turn pixels into squares for
+                               the mouse handler.  The cached squares are VolatileImages
+                               (kept in video memory where possible), drawn at the
+                               screen's own resolution on high-DPI displays. 0.32
+
+  19 Oct 26                    Flip animation (setAnimate()).  What is drawn is now a
+                               separate copy of the position, which lags behind the game
+                               while pieces are turned over, so the game and the computer
+                               player never wait for the animation. 0.33
 */
 
 import java.awt.*; 
 import java.awt.event.*;
+import java.awt.geom.*;
+import java.awt.image.*;
 import javax.swing.*;
 import java.util.*;
 
@@ -21,9 +46,10 @@ import java.util.*;
   * Maintains an othello board and draws the board as a JPanel.  Receives moves from human
   * and computer players.
   *
-  * @(#)OthPanel.java 0.1 99/10/08
+  * @(#)OthPanel.java 0.33 26/10/19
   * @author David N. Allsopp
-  * @version 0.1 1999 October 08
+  * @version 0.33 2026 October 19
+  * @see OthPosition.java
   */
 
 
@@ -36,19 +62,22 @@ object. */
 public class OthPanel extends JPanel implements Observer{
 
     OthPanel(){
+	int size=8*preferredSquare();
+	setPreferredSize(new Dimension(size,size));
+	setMinimumSize(new Dimension(64,64));
 	initPanel();
     }
 
     private final int BLACK=1,WHITE=-1;
-    private final int LEGAL=1,ILLEGAL=0;
 
     private boolean showLegal=true;
+    private OthPosition position=new OthPosition(); // the game itself, and the rules
     /** Array representing the board state.  Needs to be read by other classes, but should not
 	be written to except by this class.*/
     public int boardArray[][] = new int[10][10]; // needs to be accessible to othPlayer
-    private int legalArrayWhite[][] = new int[10][10];
-    private int legalArrayBlack[][] = new int[10][10];
-    // 8x8 boards, but leave extra space round outside to simplify loop tests
+    // 8x8 board, but leave extra space round outside to simplify loop tests.
+    // A copy of position, updated square by square as moves are made
+    private long legalBlack,legalWhite; // legal moves, one bit per square as OthPosition
     private int whoseMove;
     private boolean isComputerBlack=false;
     private boolean isComputerWhite=false;
@@ -57,6 +86,84 @@ public class OthPanel extends JPanel implements Observer{
 
     StatusBar sbar = new StatusBar(); // see inner class in this class
 
+    private boolean cachedRendering=true; // draw from images, repaint changed squares only
+    private Image tiles[];           // a whole square as drawn: see makeImages()
+
+    // What is drawn.  Normally the same as the game, but while moves are being
+    // animated it is behind: the game (and the computer player) carry on
+    // without waiting for the animation to finish.
+    private long shownBlack,shownWhite; // pieces, one bit per square as OthPosition
+    private long shownLegal;         // squares which have a legal move marker drawn
+    private int shownMover;          // ...and the colour of the markers
+    private long flipping;           // pieces being turned over, drawn part way round
+    private int frame;               // how far round, 0 to FRAMES
+
+    private boolean animate=false;   // turn pieces over gradually?
+    private LinkedList<long[]> animations=new LinkedList<long[]>(); // positions waiting to be shown
+    private final int FRAMES=8,FRAME_TIME=25; // a fifth of a second for each move
+    private javax.swing.Timer animTimer=new javax.swing.Timer(FRAME_TIME,new ActionListener(){
+	    public void actionPerformed(ActionEvent e){
+		nextFrame();
+	    }});
+
+    private int width=-1,height=-1;  // panel size when the geometry was worked out
+    private int square=32;           // size of a square in pixels
+    private int left,top;            // top left corner of the board
+    private double tileScale;        // screen pixels per pixel the tiles were drawn for
+
+
+    /* ---------------------------------------------------------------------- */
+    /*          board geometry: squares to pixels, and pixels to squares      */
+    /* ---------------------------------------------------------------------- */
+
+    // The board is the largest that fits in the panel, centred.  Everything
+    // which turns squares into pixels or back (drawing, repainting, the mouse)
+    // goes through here, and the sums are only done when the size changes.
+
+    private void checkLayout(){
+	if(getWidth()==width && getHeight()==height) return;
+	width=getWidth(); height=getHeight();
+	square=Math.max(4,Math.min(width,height)/8);
+	left=(width-8*square)/2;
+	top=(height-8*square)/2;
+	tiles=null; // need redrawing at the new size
+    }
+
+    /** Returns the column (1-8) at x pixels across the panel, or 0 if that is
+	off the board */
+    public int boardX(int px){
+	checkLayout();
+	if(px<left || px>=left+8*square) return 0;
+	return 1+(px-left)/square;
+    }
+
+    /** Returns the row (1-8) at y pixels down the panel, or 0 if that is off
+	the board */
+    public int boardY(int py){
+	checkLayout();
+	if(py<top || py>=top+8*square) return 0;
+	return 1+(py-top)/square;
+    }
+
+    /** The area of the panel covered by square x,y */
+    public Rectangle squareBounds(int x,int y){
+	checkLayout();
+	return new Rectangle(left+(x-1)*square,top+(y-1)*square,square,square);
+    }
+
+    // A square size which makes the board a sensible size on this screen.
+    // Java may already be scaling everything for a high-DPI screen, in which
+    // case 32 is right; otherwise allow for the resolution ourselves.
+
+    private static int preferredSquare(){
+	if(GraphicsEnvironment.isHeadless()) return 32;
+	GraphicsConfiguration gc=GraphicsEnvironment.getLocalGraphicsEnvironment().
+	    getDefaultScreenDevice().getDefaultConfiguration();
+	if(gc.getDefaultTransform().getScaleX()>1) return 32;
+	int dpi=Toolkit.getDefaultToolkit().getScreenResolution();
+	return Math.max(32,32*dpi/96);
+    }
+
 
     /* ---------------------------------------------------------------------- */
     /* method to update the game graphics when required by the runtime system */
@@ -64,14 +171,23 @@ public class OthPanel extends JPanel implements Observer{
 
     public void paintComponent(Graphics g) {    // gets called by the runtime library
 
+	if(cachedRendering){
+	    paintCached(g);
+	    return;
+	}
+
+	checkLayout();
+	int inset=square/16,marker=Math.max(4,square/8); // piece and marker sizes
+	int mark=square/2-marker/2;
+
 	g.setColor(Color.lightGray);
-	g.clearRect(0,0,260,260);
+	g.clearRect(0,0,width,height);
 
 	// draw array of squares
 
-	for(int x=0;x<256;x+=32){
-	    for(int y=0;y<256;y+=32){
-		g.draw3DRect(x,y,31,31,false); 
+	for(int x=left;x<left+8*square;x+=square){
+	    for(int y=top;y<top+8*square;y+=square){
+		g.draw3DRect(x,y,square-1,square-1,false); 
 	    }
 	}
 
@@ -79,28 +195,32 @@ public class OthPanel extends JPanel implements Observer{
 
 	for(int x=1;x<9;x++){
 	    for(int y=1;y<9;y++){
-		switch(boardArray[x][y]){
+		int px=left+(x-1)*square,py=top+(y-1)*square;
+		if((flipping & OthPosition.bit(x,y))!=0){
+		    drawTurning(g,px,py,shownPiece(x,y));
+		}
+		else switch(shownPiece(x,y)){
 		case BLACK : {
 		    g.setColor(Color.black); 
-		    g.fillOval(2+(x-1)*32,2+(y-1)*32,28,28);
+		    g.fillOval(px+inset,py+inset,square-2*inset,square-2*inset);
 		} ;break;
 		case WHITE : {
 		    g.setColor(Color.white); 
-		    g.fillOval(2+(x-1)*32,2+(y-1)*32,28,28);
+		    g.fillOval(px+inset,py+inset,square-2*inset,square-2*inset);
 		} ;break;
 		}
 
 		// mark legal squares for the next player
 
-		if(showLegal){
-		    switch(whoseMove){
+		if((shownLegal & OthPosition.bit(x,y))!=0){
+		    switch(shownMover){
 		    case BLACK : {
 			g.setColor(Color.black);
-			if(legalArrayBlack[x][y]==LEGAL) g.drawOval(14+(x-1)*32,14+(y-1)*32,4,4); 
+			g.drawOval(px+mark,py+mark,marker,marker); 
 		    } ;break;
 		    case WHITE : {
 			g.setColor(Color.white);
-			if(legalArrayWhite[x][y]==LEGAL) g.drawOval(14+(x-1)*32,14+(y-1)*32,4,4); 
+			g.drawOval(px+mark,py+mark,marker,marker); 
 		    } ;break;
 		    }
 		}
@@ -108,6 +228,151 @@ public class OthPanel extends JPanel implements Observer{
 	}
     } // end method
 
+    /* ---------------------------------------------------------------------- */
+    /*           cached rendering: copy from images made in advance           */
+    /* ---------------------------------------------------------------------- */
+
+    // Looks exactly the same as the drawing above, but every square of the
+    // board is one of only five pictures (empty, a black or white piece, or
+    // empty with a black or white legal move marker), so they are drawn once
+    // into opaque images and a repaint just copies one image per square.  Only
+    // the squares inside the clip are copied.  makeMove() only asks for the
+    // squares which changed to be repainted, although Swing merges the requests
+    // into one rectangle around all of them.
+    //
+    // The images are VolatileImages where possible, which live in video memory
+    // so copying them is done by the graphics card.  Their contents can be lost
+    // at any time (e.g. when the screen mode changes), so they are checked on
+    // every paint and drawn again if need be.  On a high-DPI screen they are
+    // drawn at the screen's resolution, so they are as sharp as drawing
+    // directly.
+
+    private final int EMPTY_TILE=0,BLACK_TILE=1,WHITE_TILE=2,BLACK_LEGAL_TILE=3,WHITE_LEGAL_TILE=4;
+
+    private void paintCached(Graphics g){
+	checkLayout();
+	double scale=((Graphics2D)g).getTransform().getScaleX();
+	if(tiles==null || scale!=tileScale) makeImages(scale);
+	if(!validateImages()) makeImages(scale);
+
+	Rectangle clip=g.getClipBounds();
+	if(clip==null) clip=new Rectangle(0,0,width,height);
+	if(clip.x<left || clip.y<top ||
+	   clip.x+clip.width>left+8*square || clip.y+clip.height>top+8*square){
+	    g.clearRect(clip.x,clip.y,clip.width,clip.height); // outside the board
+	}
+
+	// only the squares which overlap the clip
+
+	int x1=Math.max(1,1+Math.floorDiv(clip.x-left,square));
+	int x2=Math.min(8,1+Math.floorDiv(clip.x+clip.width-1-left,square));
+	int y1=Math.max(1,1+Math.floorDiv(clip.y-top,square));
+	int y2=Math.min(8,1+Math.floorDiv(clip.y+clip.height-1-top,square));
+	int legalTile=(shownMover==BLACK) ? BLACK_LEGAL_TILE : WHITE_LEGAL_TILE;
+
+	for(int x=x1;x<=x2;x++){
+	    for(int y=y1;y<=y2;y++){
+		int px=left+(x-1)*square,py=top+(y-1)*square;
+		long b=OthPosition.bit(x,y);
+		int tile=EMPTY_TILE;
+		if((flipping & b)==0){
+		    if((shownBlack & b)!=0) tile=BLACK_TILE;
+		    else if((shownWhite & b)!=0) tile=WHITE_TILE;
+		    else if((shownLegal & b)!=0) tile=legalTile;
+		}
+		g.drawImage(tiles[tile],px,py,square,square,null);
+		if((flipping & b)!=0) drawTurning(g,px,py,shownPiece(x,y));
+	    }
+	}
+
+	// if any were lost while we were copying them, try again
+	for(int i=0;i<tiles.length;i++){
+	    if(tiles[i] instanceof VolatileImage && ((VolatileImage)tiles[i]).contentsLost()){
+		repaint();
+		break;
+	    }
+	}
+    }
+
+    // Draw the five kinds of square into images, in exactly the same way as
+    // paintComponent() does without caching, scale screen pixels per pixel.
+
+    private void makeImages(double scale){
+	GraphicsConfiguration gc=getGraphicsConfiguration();
+	int size=(int)Math.ceil(square*scale);
+	tiles=new Image[5];
+	tileScale=scale;
+	for(int i=0;i<5;i++){
+	    if(gc!=null) tiles[i]=gc.createCompatibleVolatileImage(size,size,Transparency.OPAQUE);
+	    else tiles[i]=new BufferedImage(size,size,BufferedImage.TYPE_INT_RGB);
+	    drawTile(i);
+	}
+    }
+
+    private void drawTile(int i){
+	int inset=square/16,marker=Math.max(4,square/8);
+	Graphics2D g=(Graphics2D)tiles[i].getGraphics();
+	g.scale(tileScale,tileScale);
+	g.setColor(getBackground());
+	g.fillRect(0,0,square,square);
+	g.setColor(Color.lightGray);
+	g.draw3DRect(0,0,square-1,square-1,false); 
+	g.setColor((i==BLACK_TILE || i==BLACK_LEGAL_TILE) ? Color.black : Color.white);
+	if(i==BLACK_TILE || i==WHITE_TILE) g.fillOval(inset,inset,square-2*inset,square-2*inset);
+	if(i==BLACK_LEGAL_TILE || i==WHITE_LEGAL_TILE){
+	    g.drawOval(square/2-marker/2,square/2-marker/2,marker,marker);
+	}
+	g.dispose();
+    }
+
+    // Check the video memory images are still there, and redraw any which have
+    // been lost.  Returns false if they need making again from scratch (e.g. the
+    // window has moved to another screen).
+
+    private boolean validateImages(){
+	GraphicsConfiguration gc=getGraphicsConfiguration();
+	for(int i=0;i<tiles.length;i++){
+	    if(!(tiles[i] instanceof VolatileImage)) continue;
+	    switch(((VolatileImage)tiles[i]).validate(gc)){
+	    case VolatileImage.IMAGE_INCOMPATIBLE : return false;
+	    case VolatileImage.IMAGE_RESTORED : drawTile(i); break;
+	    }
+	}
+	return true;
+    }
+
+    // The piece drawn on square x,y
+    private int shownPiece(int x,int y){
+	long b=OthPosition.bit(x,y);
+	if((shownBlack & b)!=0) return BLACK;
+	if((shownWhite & b)!=0) return WHITE;
+	return 0;
+    }
+
+    /** Chooses between drawing from cached images and repainting only the
+	squares which change (the default), or drawing everything every time. */
+    public void setCachedRendering(boolean b){
+	cachedRendering=b;
+	repaint();
+    }
+
+    // The squares which should have a legal move marker
+    private long legalShown(){
+	if(!showLegal) return 0;
+	if(whoseMove==BLACK) return legalBlack;
+	if(whoseMove==WHITE) return legalWhite;
+	return 0;
+    }
+
+    // Ask for the given squares (one bit each, as OthPosition) to be repainted
+    private void repaintSquares(long squares){
+	while(squares!=0){
+	    int sq=Long.numberOfTrailingZeros(squares);
+	    squares&=squares-1;
+	    repaint(squareBounds(1+(sq&7),1+(sq>>3)));
+	}
+    }
+
     /* ---------------------------------------------------------------------- */
     /*                                  MAIN - unused                         */
     /* ---------------------------------------------------------------------- */
@@ -123,29 +388,21 @@ public class OthPanel extends JPanel implements Observer{
     /* ---------------------------------------------------------------------- */
     /** Initialises the board; clears it, places initial 4 pieces, sets Black to move */
     public void initPanel(){
-	whoseMove=BLACK; // black always moves first, that's the rules.
 
 	// need to check if these initial pieces are the correct way round
 	// also assuming for the moment that board coords are Across, Down
 	// from the top left corner
 
-	for(int x=0;x<10;x++){
-	    for(int y=0;y<10;y++){
-		boardArray[x][y]=0;
-		legalArrayWhite[x][y]=ILLEGAL;
-		legalArrayBlack[x][y]=ILLEGAL;
-	    }
-	}
-
-	boardArray[4][4]=boardArray[5][5]=BLACK;
-	boardArray[5][4]=boardArray[4][5]=WHITE; 
-
-	legalArrayWhite[3][4]=legalArrayWhite[4][3]=
-	    legalArrayWhite[5][6]=legalArrayWhite[6][5]= LEGAL;
-
-	legalArrayBlack[3][5]=legalArrayBlack[5][3]=
-	    legalArrayBlack[4][6]=legalArrayBlack[6][4]= LEGAL;
+	position.initPosition(); // black always moves first, that's the rules.
+	position.toArray(boardArray);
+	whoseMove=position.whoseMove;
+	legalBlack=position.legalMoves(BLACK);
+	legalWhite=position.legalMoves(WHITE);
 
+	animTimer.stop(); // forget any moves still being animated
+	animations.clear();
+	showPosition(snapshot(),0);
+	repaint();
     }
 
 
@@ -158,6 +415,7 @@ public class OthPanel extends JPanel implements Observer{
 	was made.  Returns false if the move was illegal and hence not made. */
     public boolean tryMove(int x, int y) {
 
+	if(x<1 || x>8 || y<1 || y>8) return false; // not on the board
 	if(boardArray[x][y]!=0) return false; // square is already occupied
 
 	// check if legal from previously constructed table of legal moves
@@ -166,17 +424,17 @@ public class OthPanel extends JPanel implements Observer{
 	switch(whoseMove){
 	case BLACK: {
 	    if(isComputerBlack) return false;
-	    if(legalArrayBlack[x][y]!=LEGAL) return false;
+	    if((legalBlack & OthPosition.bit(x,y))==0) return false;
 	} ;break;
 	case WHITE: {
 	    if(isComputerWhite) return false;
-	    if(legalArrayWhite[x][y]!=LEGAL) return false;
+	    if((legalWhite & OthPosition.bit(x,y))==0) return false;
 	} ;break; 
 	}
 
-	// move is legal, so update board (which will update legal table)
+	// move is legal, so update board (which will update legal moves)
 
-	makeMove(x,y,whoseMove);
+	makeMove(x,y);
 
 	return true;  
     }
@@ -203,9 +461,9 @@ public class OthPanel extends JPanel implements Observer{
     void tryComputerMove(int x, int y, int colour){
 
 	// check the received move is legal
-	if((colour==BLACK && legalArrayBlack[x][y]==LEGAL) ||   // paranoid check, shouldn't
-	   (colour==WHITE && legalArrayWhite[x][y]==LEGAL)) {   // be necessary really
-	    makeMove(x,y,colour); // make the move (which should also repaint the board)
+	if(colour==whoseMove && position.isLegal(x,y)) { // paranoid check, shouldn't
+	    // be necessary really
+	    makeMove(x,y); // make the move (which should also repaint the board)
 	}
 	else { // print out some debug information
 	    System.out.println("Fatal error: computer attempted illegal move"); 
@@ -240,251 +498,167 @@ public class OthPanel extends JPanel implements Observer{
     /*                  NB does not check if move is legal                    */
     /* ---------------------------------------------------------------------- */
 
-    private void makeMove(int x, int y, int whoseMove){
-	int xx,yy;
-
-	boardArray[x][y]=whoseMove;  // place new piece
-
-	// check right (increasing x)
-	xx=x; yy=y;
-	while(boardArray[++xx][yy]==-whoseMove){}
-	if(boardArray[xx--][yy]==whoseMove){ // have trapped some enemy pieces
-	    // NB _or_ have one of your pieces adjacent! todo!
-	    while(xx!=x){boardArray[xx--][yy]=whoseMove;}
-	}
-
-	// check left (decreasing x)
-	xx=x; yy=y;
-	while(boardArray[--xx][yy]==-whoseMove){}
-	if(boardArray[xx++][yy]==whoseMove){ // have trapped some enemy pieces
-	    while(xx!=x){boardArray[xx++][yy]=whoseMove;}
-	}
-
-	// check down (increasing y)
-	xx=x; yy=y;
-	while(boardArray[xx][++yy]==-whoseMove){}
-	if(boardArray[xx][yy--]==whoseMove){ // have trapped some enemy pieces
-	    while(yy!=y){boardArray[xx][yy--]=whoseMove;}
-	}
-
-	// check up (decreasing y)
-	xx=x; yy=y;
-	while(boardArray[xx][--yy]==-whoseMove){}
-	if(boardArray[xx][yy++]==whoseMove){ // have trapped some enemy pieces
-	    while(yy!=y){boardArray[xx][yy++]=whoseMove;}
-	}
+    private void makeMove(int x, int y){
+	long black=position.black,white=position.white;
 
-	// check down right 
-	xx=x; yy=y;
-	while(boardArray[++xx][++yy]==-whoseMove){}
-	if(boardArray[xx--][yy--]==whoseMove){ // have trapped some enemy pieces
-	    while(yy!=y){boardArray[xx--][yy--]=whoseMove;}
-	}
+	position.makeMove(x,y); // place new piece, flip, and decide who is next
 
-	// check up left 
-	xx=x; yy=y;
-	while(boardArray[--xx][--yy]==-whoseMove){}
-	if(boardArray[xx++][yy++]==whoseMove){ // have trapped some enemy pieces
-	    while(yy!=y){boardArray[xx++][yy++]=whoseMove;}
-	}
+	// copy the squares which changed (the new piece and the flipped ones) into
+	// the board array
 
-	// check down left 
-	xx=x; yy=y;
-	while(boardArray[--xx][++yy]==-whoseMove){}
-	if(boardArray[xx++][yy--]==whoseMove){ // have trapped some enemy pieces
-	    while(yy!=y){boardArray[xx++][yy--]=whoseMove;}
+	long changed=(black^position.black)|(white^position.white);
+	while(changed!=0){
+	    int sq=Long.numberOfTrailingZeros(changed);
+	    changed&=changed-1;
+	    boardArray[1+(sq&7)][1+(sq>>3)]=((position.black>>>sq & 1)!=0) ? BLACK : WHITE;
 	}
 
-	// check up right 
-	xx=x; yy=y;
-	while(boardArray[++xx][--yy]==-whoseMove){}
-	if(boardArray[xx--][yy++]==whoseMove){ // have trapped some enemy pieces
-	    while(yy!=y){boardArray[xx--][yy++]=whoseMove;}
-	}
+	updateLegalMoves();
 
-	updateLegalArrays();
+	// NB must update legal moves first so that the new legal square are shown correctly
 
-	repaint(); 
+	// The computer's moves arrive on its own thread, and the animation belongs
+	// to the event thread, so pass it a copy of the new position.  Without
+	// animation it is just drawn straight away, as it always was.
 
-	// NB must update legal array first so that the new legal square are shown correctly
+	final long move[]=snapshot();
+	if(!animate || SwingUtilities.isEventDispatchThread()) showMove(move);
+	else SwingUtilities.invokeLater(new Runnable(){
+		public void run(){
+		    showMove(move);
+		}});
 
 	return;
     } // end of method makeMove
 
     /* ---------------------------------------------------------------------- */
-    /*                 Method to update legal arrays after a move             */
-    /*       and to determine whose move is next, and detect end of game      */
+    /*        what is drawn: the position, or moves being animated            */
     /* ---------------------------------------------------------------------- */
 
-    private void updateLegalArrays() {
-	int xx,yy;
-	int legalBlack=0;
-	int legalWhite=0;
-
-	// Simplest way (not the most efficient) is to check separately for 
-	// black and white, and to just iterate through all the squares
-	// NB a square can be legal for both players!
-
-	// A possible more efficient way would be to check each direction in
-	// a colour-independent way, as each diection can only flip pieces
-	// for one or zero players.  You would have to note when the legality
-	// is determined for each player so you can exit as early as possible
+    // The game as it should be drawn: {black pieces, white pieces, legal move
+    // markers, colour of the markers}
+    private long[] snapshot(){
+	long move[]={position.black,position.white,legalShown(),whoseMove};
+	return move;
+    }
 
-	// todo: also inefficient to check for both players first, and _then_
-	// see whose turn it is!
+    // A move has been made, giving the position move (from snapshot())
+    private void showMove(long move[]){
+	if(!animate){
+	    showPosition(move,0);
+	    return;
+	}
+	animations.addLast(move);
+	if(!animTimer.isRunning()) nextAnimation();
+    }
 
-	//check for black
+    // Start drawing the next position waiting to be shown.  If the game has
+    // got more than one move ahead of the animation (e.g. the computer playing
+    // itself quickly), skip to the latest move, and turn over everything which
+    // has changed colour since what is on the screen now.
+
+    private void nextAnimation(){
+	long move[]=animations.removeFirst();
+	while(!animations.isEmpty()) move=animations.removeFirst();
+	long flips=(shownBlack^move[0]) & (shownBlack|shownWhite);
+	showPosition(move,flips);
+	if(flips!=0) animTimer.start();
+    }
 
-	for(int x=1; x<9; x++){
-	    for(int y=1; y<9; y++){
+    // Called by animTimer: draw the pieces being turned over a bit further round
+    private void nextFrame(){
+	if(++frame<FRAMES){
+	    if(cachedRendering) repaintSquares(flipping);
+	    else repaint();
+	    return;
+	}
+	long done=flipping;
+	flipping=0;
+	if(cachedRendering) repaintSquares(done);
+	else repaint();
+	if(animations.isEmpty()) animTimer.stop();
+	else nextAnimation();
+    }
 
-		// if square is full then it's illegal 
-		if(boardArray[x][y]!=0){legalArrayBlack[x][y]=ILLEGAL;continue;}
+    // Draw position move, with pieces flips being turned over from the start
+    private void showPosition(long move[],long flips){
+	long dirty=(shownBlack^move[0])|(shownWhite^move[1])|flipping|shownLegal|move[2];
+	shownBlack=move[0]; shownWhite=move[1];
+	shownLegal=move[2]; shownMover=(int)move[3];
+	flipping=flips;
+	frame=0;
+	if(cachedRendering) repaintSquares(dirty); // old markers go, new ones appear
+	else repaint();
+    }
 
-		// check right (increasing x)
-		xx=x; yy=y; if(boardArray[++xx][yy]==WHITE){
-		    while(boardArray[++xx][yy]==WHITE){}
-		    if(boardArray[xx][yy]==BLACK){legalArrayBlack[x][y]=LEGAL;
-                    legalBlack++;continue;}
-		}
-		// check left (decreasing x)
-		xx=x; yy=y; if(boardArray[--xx][yy]==WHITE){
-		    while(boardArray[--xx][yy]==WHITE){}
-		    if(boardArray[xx][yy]==BLACK){legalArrayBlack[x][y]=LEGAL;
-                    legalBlack++;continue;}
-		}
-		// check down (increasing y)
-		xx=x; yy=y; if(boardArray[xx][++yy]==WHITE){
-		    while(boardArray[xx][++yy]==WHITE){}
-		    if(boardArray[xx][yy]==BLACK){legalArrayBlack[x][y]=LEGAL;
-                    legalBlack++;continue;}
-		}
-		// check up (decreasing y)
-		xx=x; yy=y; if(boardArray[xx][--yy]==WHITE){
-		    while(boardArray[xx][--yy]==WHITE){}
-		    if(boardArray[xx][yy]==BLACK){legalArrayBlack[x][y]=LEGAL;
-                    legalBlack++;continue;}
-		}
-		// check down right 
-		xx=x; yy=y; if(boardArray[++xx][++yy]==WHITE){
-		    while(boardArray[++xx][++yy]==WHITE){}
-		    if(boardArray[xx][yy]==BLACK){legalArrayBlack[x][y]=LEGAL;
-                    legalBlack++;continue;}
-		}
-		// check up left
-		xx=x; yy=y; if(boardArray[--xx][--yy]==WHITE){
-		    while(boardArray[--xx][--yy]==WHITE){}
-		    if(boardArray[xx][yy]==BLACK){legalArrayBlack[x][y]=LEGAL;
-                    legalBlack++;continue;}
-		}
-		// check down left
-		xx=x; yy=y; if(boardArray[--xx][++yy]==WHITE){
-		    while(boardArray[--xx][++yy]==WHITE){}
-		    if(boardArray[xx][yy]==BLACK){legalArrayBlack[x][y]=LEGAL;
-                    legalBlack++;continue;}
-		}
-		// check up right
-		xx=x; yy=y; if(boardArray[++xx][--yy]==WHITE){
-		    while(boardArray[++xx][--yy]==WHITE){}
-		    if(boardArray[xx][yy]==BLACK){legalArrayBlack[x][y]=LEGAL;
-                    legalBlack++;continue;}
-		}
-		legalArrayBlack[x][y]=ILLEGAL;
+    // Draw a piece which is turning over to become colour, as an ellipse
+    // which narrows to nothing half way and then widens again
+    private void drawTurning(Graphics g,int px,int py,int colour){
+	int inset=square/16,size=square-2*inset;
+	double t=(double)frame/FRAMES;
+	int w=(int)Math.round(size*Math.abs(Math.cos(Math.PI*t)));
+	if(t<0.5) colour=-colour; // still showing the old colour
+	g.setColor((colour==BLACK) ? Color.black : Color.white);
+	g.fillOval(px+inset+(size-w)/2,py+inset,w,size);
+    }
 
-	    }
+    /** Turns the animation of flipped pieces on or off */
+    public void setAnimate(boolean b){
+	animate=b;
+	if(!animate && animTimer.isRunning()){ // finish straight away
+	    animTimer.stop();
+	    long move[]=snapshot();
+	    animations.clear();
+	    flipping=0;
+	    showPosition(move,0);
 	}
+    }
 
-	//check for white
-
-	for(int x=1; x<9; x++){
-	    for(int y=1; y<9; y++){
+    /* ---------------------------------------------------------------------- */
+    /*                 Method to update legal moves after a move              */
+    /*       and to determine whose move is next, and detect end of game      */
+    /* ---------------------------------------------------------------------- */
 
-		// if square is full then it's illegal 
-		if(boardArray[x][y]!=0){legalArrayWhite[x][y]=ILLEGAL;continue;}
+    private void updateLegalMoves() {
+	int lastMove=whoseMove;
 
-		// check right (increasing x)
-		xx=x; yy=y; if(boardArray[++xx][yy]==BLACK){
-		    while(boardArray[++xx][yy]==BLACK){}
-		    if(boardArray[xx][yy]==WHITE){legalArrayWhite[x][y]=LEGAL;
-                    legalWhite++;continue;}
-		}
-		// check left (decreasing x)
-		xx=x; yy=y; if(boardArray[--xx][yy]==BLACK){
-		    while(boardArray[--xx][yy]==BLACK){}
-		    if(boardArray[xx][yy]==WHITE){legalArrayWhite[x][y]=LEGAL;
-                    legalWhite++;continue;}
-		}
-		// check down (increasing y)
-		xx=x; yy=y; if(boardArray[xx][++yy]==BLACK){
-		    while(boardArray[xx][++yy]==BLACK){}
-		    if(boardArray[xx][yy]==WHITE){legalArrayWhite[x][y]=LEGAL;
-                    legalWhite++;continue;}
-		}
-		// check up (decreasing y)
-		xx=x; yy=y; if(boardArray[xx][--yy]==BLACK){
-		    while(boardArray[xx][--yy]==BLACK){}
-		    if(boardArray[xx][yy]==WHITE){legalArrayWhite[x][y]=LEGAL;
-                    legalWhite++;continue;}
-		}
-		// check down right 
-		xx=x; yy=y; if(boardArray[++xx][++yy]==BLACK){
-		    while(boardArray[++xx][++yy]==BLACK){}
-		    if(boardArray[xx][yy]==WHITE){legalArrayWhite[x][y]=LEGAL;
-                    legalWhite++;continue;}
-		}
-		// check up left
-		xx=x; yy=y; if(boardArray[--xx][--yy]==BLACK){
-		    while(boardArray[--xx][--yy]==BLACK){}
-		    if(boardArray[xx][yy]==WHITE){legalArrayWhite[x][y]=LEGAL;
-                    legalWhite++;continue;}
-		}
-		// check down left
-		xx=x; yy=y; if(boardArray[--xx][++yy]==BLACK){
-		    while(boardArray[--xx][++yy]==BLACK){}
-		    if(boardArray[xx][yy]==WHITE){legalArrayWhite[x][y]=LEGAL;
-                    legalWhite++;continue;}
-		}
-		// check up right
-		xx=x; yy=y; if(boardArray[++xx][--yy]==BLACK){
-		    while(boardArray[++xx][--yy]==BLACK){}
-		    if(boardArray[xx][yy]==WHITE){legalArrayWhite[x][y]=LEGAL;
-                    legalWhite++;continue;}
-		}
-		legalArrayWhite[x][y]=ILLEGAL;
+	// a square can be legal for both players, and both are needed to show
+	// them, so keep both
 
-	    }
-	}
+	legalBlack=position.legalMoves(BLACK);
+	legalWhite=position.legalMoves(WHITE);
+	whoseMove=position.whoseMove; // OthPosition has already dealt with passes
 
-	whoseMove=-whoseMove; //change player
 	if(whoseMove==BLACK) sbar.setStatusBarText("Black to move.");
 	else sbar.setStatusBarText("White to move.");
 
-	if(legalBlack+legalWhite<1){
+	if(whoseMove==0){
 	    System.out.println("Neither player can move: End of game."); //debug
 	    sbar.setStatusBarText("End of game."+getResult());
-	    whoseMove=0; // needed to prevent computer trying to move again?
 	    // lock(); // shouldn't be necessary
 	}
-	else if(legalBlack==0 && whoseMove==BLACK){
+	else if(whoseMove==WHITE && lastMove==WHITE){
 	    System.out.println("Black can't move: White to move."); //debug
 	    sbar.setStatusBarText("Black can't move: White to move.");
-	    whoseMove=WHITE;
 	}
-	else if(legalWhite==0 && whoseMove==WHITE){
+	else if(whoseMove==BLACK && lastMove==BLACK){
 	    System.out.println("White can't move: Black to move."); //debug
 	    sbar.setStatusBarText("White can't move: Black to move.");
-	    whoseMove=BLACK;
 	}
 
 	return;
-    } // end of method updateLegalArrays
+    } // end of method updateLegalMoves
 
     /* ---------------------------------------------------------------------- */
     /*                  toggle showing of legal moves                         */
     /* ---------------------------------------------------------------------- */
 
     /** Controls whether the legal moves available to a player are drawn on the board */
-    public void setShowLegal(boolean b){showLegal=b; repaint();}
+    public void setShowLegal(boolean b){
+	showLegal=b;
+	if(!animTimer.isRunning()) showPosition(snapshot(),0); // else it'll catch up
+	repaint();
+    }
 
 
     /* ---------------------------------------------------------------------- */
@@ -493,15 +667,8 @@ public class OthPanel extends JPanel implements Observer{
 
     private String getResult(){
 
-	int black=0;
-	int white=0;
-
-	for(int x=1; x<9; x++){
-	    for(int y=1; y<9; y++){
-		if(boardArray[x][y]==WHITE) white++;
-		else if(boardArray[x][y]==BLACK) black++;
-	    }
-	}
+	int black=position.countPieces(BLACK);
+	int white=position.countPieces(WHITE);
 
 	if(white==black) return " Game drawn.";
 	else if(white>black) return (" White wins "+white+"-"+black+".");
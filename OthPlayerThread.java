@@ -43,21 +43,109 @@
   14 Oct 99  "                 Minor improvements to assess() - removed count of pieces,
                                relying just on mobility, corners, and discouraging C,X squares
 
+  19 Oct 26                    Moved the body of run() into search(), which returns the move
+                               (now with its score) so headless tools can search in their
+                               own threads.  Added analysis mode (setAnalysing()). 0.42
+
+  19 Oct 26                    saveToDatabase() stores each position in canonical form (see
+                               OthPosition), once only.  This also changes the bit order to
+                               OthPosition's, and fixes the int shift which lost the
+                               upper 32 squares.
+
+  19 Oct 26                    Stable discs: edge stability by table lookup on the edge
+                               indices, plus discs whose four lines are all full.  Edge
+                               stability added to assess(), and used to cut off the
+                               endgame search when the result is already decided. 0.43
+
+  19 Oct 26                    Incremental evaluation (setIncrementalEval()): the make/undo
+                               methods keep the assess() score up to date, by re-scoring
+                               only the lines which changed, so a leaf just reads it.
+                               Off by default, as it is slower at present; see OthBench.
+
+  19 Oct 26                    legalTable and flipsTable are built with OthPosition.flips()
+                               instead of linelegal(), so the engine and the board on
+                               screen share one set of rules.
+
+  19 Oct 26                    Aspiration windows (setAspiration()): the root is searched
+                               with a narrow window around an expected score, and searched
+                               again with a wider one if the score falls outside it.
+
+  19 Oct 26                    MTD(f) (setMTDf()): the root is searched with a series of
+                               zero-window searches, using a transposition table
+                               (OthHashTable) kept up to date by the make/undo methods.
+                               negamax() is now fail-soft.  Solving searches to depth 60,
+                               and stops at a full board, so that passes can't make it
+                               run out of depth and call assess() before the end.
+
+  19 Oct 26                    Selective search (setProbCut()): Multi-ProbCut, with the
+                               parameters from OthProbCut.
+
+  19 Oct 26                    Game memory (setGameMemory()): the transposition tables,
+                               history table and principal variation are kept from one
+                               search to the next, and the root moves are put in order.
+
+  19 Oct 26                    setSolveDepth(), so that a timed game (OthClock) can start
+                               solving sooner when there is time in hand.
+
+  19 Oct 26                    negamax() checks every 256 nodes whether it has been told
+                               to stop (stopit(), setDeadline() or an interrupt), and if so
+                               unwinds at once without storing anything.  Stopping used to
+                               wait for the root move in progress to finish, which could
+                               take minutes when solving.  getStopLatency() says how long
+                               it took.
+
+  19 Oct 26                    The board, undo records and root move list come from an
+                               OthSearchContext, one per thread, instead of being made
+                               for each search.  A player can be set up and searched again
+                               (pieces and the statistics are reset by setup()), and
+                               search(int[]) returns the move in the caller's array, so a
+                               search needn't allocate anything.  Depths up to 60 allowed.
+
+  19 Oct 26                    Before solving, the root moves are put in order by a shallow
+                               midgame search (setEndgameOrdering()), so that the likely
+                               best move is solved first.  WLD solving stopped at the first
+                               win but left that move out when sorting, so could choose a
+                               losing move instead.
+
+  19 Oct 26                    The endgame has its own search, endSolve(), which tries the
+                               moves leaving the opponent fewest replies first, then those
+                               in regions (quadrants) with an odd number of empty squares.
+                               The board keeps a mask of the empty squares and the parity
+                               of each quadrant up to date as moves are made and undone.
+
+  19 Oct 26                    The last four empty squares are solved by solve1() to
+                               solve4(), on bitboards, without undo records or
+                               end_assess().  The last square only counts the flips.
+
+  19 Oct 26                    Enhanced transposition cutoffs in endSolve(): each child is
+                               looked up in the table before any is searched, and one
+                               which already proves a cutoff ends the node at once.
+
+  19 Oct 26                    evaluate(), assess() for a board outside a search (see
+                               also OthBatchEval, for many positions)
+
+  19 Oct 26                    The keys of the positions in database.dat are read on the
+                               first save, rather than when the class is loaded
+
+  19 Oct 26                    A search stopped by its deadline returns the best of the
+                               root moves it had finished, if any, and isPartial() says
+                               so.  stopit() and interrupts still give null.
+
 */
 
 /*
 
   Things to do:
-  0) shallow search before WLD solving, to get best/fastest move
+  0) shallow search before WLD solving, to get best/fastest move - done
   1) Saving of solved games to create database, or find one on the 'net.
   2) Improve the evaluation function by using indices and mobility
   3) See if move ordering or iterative deepening help after that
   4) Endgame solver improvements
   5) Opening book (after 2)
-  6) Time scheduling rather than fixed depth
-  7) Negascout? or other narrow-window algorithms
+  6) Time scheduling rather than fixed depth (done for sessions, see OthClock)
+  7) Negascout? or other narrow-window algorithms (MTD(f) done, see setMTDf())
   8) Killer move heuristic
-  9) Hash table 
+  9) Hash table - done, see OthHashTable
   10) Using 9) (or otherwise) - thinking on opponent's time 
   11) progress bar or percentage for the GUI
 */
@@ -91,33 +179,193 @@ public class OthPlayerThread extends Observable implements Runnable{
     boolean solving=true;
     boolean savingSolved=true;
     int solveDepth=17;  // WLD solve at 16 left, fully solve at 15 left
+    boolean endgame=false; // are we solving (searching to the end of the game)?
+    long nodes=0,stabilityCuts=0; // statistics
+    boolean incrementalEval=false; // keep assess() score up to date during the search?
+    boolean incremental=false;    // ...and are we actually doing it in this search?
+    boolean analysing=false; // quiet, and always search, for headless tools
+    boolean aspiration=false; // search the root with a narrow window around...
+    int expectedScore=0;      // ...this score
+    int researches=0;         // times the window was too narrow (statistics)
+    static final int ASPIRATION_WINDOW=8; // starting half-width, in assess() units
+    boolean mtdf=false;       // MTD(f) at the root, rather than alpha-beta?
+    OthHashTable table=null;  // transposition table, if any
+    int passes=0;             // zero-window searches done by MTD(f) (statistics)
+    static final int HASH_BITS=18; // size of the table made by setMTDf(), 2^18 entries
+    OthProbCut probCut=null;  // parameters for a selective search, if any
+    long probCuts=0;          // nodes cut off by it (statistics)
+    boolean enhancedCutoffs=true; // look up the children when solving, for cutoffs?
+    long etcProbes=0,etcCuts=0;   // children looked up, and cutoffs found (statistics)
+    OthGameMemory memory=null; // kept from the last search in this game, if any
+    int history[][]=null;     // cutoffs by square, from the memory
+    OthSearchContext context=null; // working storage, or null for the thread's own
+    int orderDepth=4;         // depth of the search ordering the root moves before solving
 
 
     /* --------------------------------thread control----------------------------- */
     volatile Thread signal;
-
-    /** Signals to the thread that it should stop and die.  The thread may not stop
-	immediately, but it will cease to take any part in the game */
+    volatile long stopTime=0; // System.nanoTime() when told to stop
+    long deadline=0;          // System.nanoTime() at which to stop, or 0 for never
+    long stopLatency=-1;      // ns from being told to stop to stopping, -1 if not stopped
+    boolean stopped=false;    // noticed that we've been told to stop, so unwinding
+    boolean timedOut=false;   // ...by the deadline, rather than stopit() or an interrupt
+    boolean partial=false;    // the move returned is from an unfinished search
+    Thread searchThread;      // the thread running search()
+    static final int POLL_MASK=255;  // look for a stop once every 256 nodes
+
+    /** Signals to the thread that it should stop and die.  The search unwinds
+	within a few hundred nodes, and the thread will cease to take any part
+	in the game */
     public void stopit() {
+	stopTime=System.nanoTime();
 	signal= null;
     }
 
+    /** Stops the search, as stopit() would, once System.nanoTime() reaches
+	the given time.  0 (the default) means no deadline. */
+    public void setDeadline(long nanoTime){
+	deadline=nanoTime;
+    }
+
+    /** Did the last search run out of time partway through, so that the move
+	it returned is the best of only some of the root moves?  The first root
+	move (the one the game memory expected, if there is one) is always among
+	them. */
+    public boolean isPartial(){
+	return partial;
+    }
+
+    /** How long the last search took to stop, in ns, after stopit(), the
+	deadline or an interrupt; -1 if it wasn't stopped */
+    public long getStopLatency(){
+	return stopLatency;
+    }
+
+    // Called by negamax() every so many nodes.  Has the search been told to
+    // stop, run past its deadline or had its thread interrupted?  If so it
+    // unwinds without storing anything, and search() returns null (or, at the
+    // deadline, the best root move finished so far).
+
+    boolean stopping(){
+	if(signal==searchThread){
+	    if(searchThread.isInterrupted()) {stopTime=System.nanoTime(); signal=null;}
+	    else if(deadline!=0 && System.nanoTime()-deadline>=0) {stopTime=deadline; signal=null; timedOut=true;}
+	}
+	stopped=(signal!=searchThread);
+	return stopped;
+    }
+
     /* -------------------------------- setup ------------------------------------ */
 
+    /** Analysis mode, for headless tools: searches even if there is only one move
+	(so that a score is always returned), doesn't print progress and doesn't save
+	solved positions. */
+    public void setAnalysing(boolean b){
+	analysing=b;
+	if(b) savingSolved=false;
+    }
+
+    /** Chooses whether the evaluation is kept up to date as moves are made and
+	undone, or worked out from scratch at each leaf (the default, since with
+	this evaluation it is quicker; see OthBench).  The result is the same
+	either way. */
+    public void setIncrementalEval(boolean b){
+	incrementalEval=b;
+    }
+
+    /** Asks for the root to be searched with a narrow window around the
+	expected score (e.g. from a shallower search of the same position) rather
+	than an infinite one.  The narrower window gives more cutoffs; if the score
+	turns out to be outside it the root is searched again with a wider window,
+	so the result is the same.  Not used when solving the endgame. */
+    public void setAspiration(int expected){
+	aspiration=true;
+	expectedScore=expected;
+    }
+
+    /** Chooses MTD(f) rather than alpha-beta at the root.  MTD(f) finds the
+	score by a series of zero-window searches, each of which only says whether
+	the score is above or below a guess, with a transposition table to remember
+	what the searches before found out.  The expected score from setAspiration()
+	is used as the first guess.  Makes a table if there isn't one (and there
+	is no game memory). */
+    public void setMTDf(boolean b){
+	mtdf=b;
+    }
+
+    /** Gives the search a transposition table (or null for none, the default
+	without MTD(f)).  The table should be empty, or only hold results from
+	searches with the same solving setting. */
+    public void setHashTable(OthHashTable t){
+	table=t;
+    }
+
+    /** Carries on from the searches before in the same game: uses (and adds to)
+	the memory's transposition tables and history table, and starts with the
+	move its principal variation expects.  Each search uses the memory's
+	table, whatever setHashTable() said.  See OthGameMemory. */
+    public void setGameMemory(OthGameMemory m){
+	memory=m;
+    }
+
+    /** Solves the endgame (if solving) when there are fewer than n empty
+	squares: win/loss/draw with n-1, exactly with fewer.  17 to start with. */
+    public void setSolveDepth(int n){
+	solveDepth=n;
+    }
+
+    /** Before solving the endgame, the root moves are put in order by a midgame
+	search to the given depth, best first, so that the best move is likely
+	to be solved first; its score then gives the other moves a narrow window,
+	and a WLD solve can stop at the first win.  4 to start with; 0 turns it
+	off.  Not used with MTD(f), which orders the root moves itself. */
+    public void setEndgameOrdering(int depth){
+	orderDepth=depth;
+    }
+
+    /** Chooses whether the endgame search looks up every move's result in the
+	transposition table before searching any of them (enhanced transposition
+	cutoffs), so that a move already known to be good enough ends the search
+	of the position at once.  On by default; only used with a table, and with
+	ETC_EMPTIES or more empty squares. */
+    public void setEnhancedCutoffs(boolean b){
+	enhancedCutoffs=b;
+    }
+
+    /** Searches with the given working storage, rather than the searching
+	thread's own (OthSearchContext.current()). */
+    public void setContext(OthSearchContext c){
+	context=c;
+    }
+
+    /** Makes the midgame search selective, using Multi-ProbCut with the given
+	parameters (see OthProbCut), or full-width if null (the default).  Nodes
+	whose score a shallow search predicts to be well outside the window are
+	cut off, which lets the search go much deeper in the same time, at the
+	risk of now and then missing the best move. */
+    public void setProbCut(OthProbCut p){
+	probCut=p;
+    }
+
     /** Provide setup information before starting. Need a 10x10 array
 containing the board, the search depth required (in half-moves), the
 player, and whether endgame solving should be used. High search depths
 may be unuseably slow, depending on your hardware.  Future versions
 may include variable-depth search with time constraints.  This method
 makes some checks on the validity of the parameters, and may refuse to
-allow the thread to be started if some checks are failed. */
+allow the thread to be started if some checks are failed.  It may be
+called again after a search, to use the same player for another; the other
+settings are kept. */
 
     public void setup(int[][] board,int player,int depth, boolean solving){
 	setupYet=true;
 	this.depth=depth;
 	this.solving=solving;
 	aboard=board;
-	if(depth<1 || depth>20){
+	pieces=0;
+	nodes=stabilityCuts=probCuts=etcProbes=etcCuts=0;
+	researches=passes=0;
+	if(depth<1 || depth>60){
 	    this.depth=5; 
 	    System.out.println("Error: Illegal search depth. Using default of 5.");
 	}
@@ -159,6 +407,8 @@ allow the thread to be started if some checks are failed. */
     static final int BLACK=1,WHITE=-1;
     static final int MOBIL_WEIGHT=2,POTEN_WEIGHT=1; 
     // way of weighting contribution from mobility and potential mobility
+    static final int STABLE_WEIGHT=4; // for each stable disc on an edge
+    static final int STABILITY_EMPTIES=5; // stability cutoffs only with this many empties
 
     static final byte legalTable[][]=new byte[2][6561]; 
     // lookup table to help find legal moves
@@ -180,16 +430,52 @@ allow the thread to be started if some checks are failed. */
     // lookup tables giving the change in a board index when a piece is placed or
     // flipped at a given position
 
+    static final byte stableTable[]=new byte[6561];
+    // which pieces on an edge (given the edge's index) can never be flipped
+
+    static final int stableScoreTable[]=new int[6561];
+    // number of stable black pieces minus stable white pieces on an edge
+
+    static final byte blackBits[]=new byte[6561],whiteBits[]=new byte[6561];
+    // which squares along a line hold black, or white, pieces
+
+    static final long rowMask[]=new long[8],columnMask[]=new long[8];
+    static final long diag1Mask[]=new long[15],diag2Mask[]=new long[15];
+    static final long columnSpread[]=new long[256];
+    // masks of the squares on each line, in OthPosition's bit order 
+    // (bit=(y-1)*8+(x-1)), and a table to turn the bits for a column into a mask
+
+    static final int rowEval[][]=new int[8][],columnEval[][]=new int[8][];
+    static final int diag1Eval[][]=new int[15][],diag2Eval[][]=new int[15][];
+    // the part of assess() which comes from each line, by index: mobility, plus
+    // stable pieces for the edges.  Diagonals shorter than 4 aren't counted.
+
+    static final int squareWeight[][]=new int[10][10];
+    // the part of assess() which comes from each square (corners, X and C squares)
+
+    static final int quadrantBit[][]=new int[10][10];
+    // which quadrant of the board each square is in, as a bit for Board.parity
+
+    static final long lineBits[][]=new long[10][10];
+    // the scored lines through each square, one bit per line: rows are bits 0-7,
+    // columns 8-15, diag1 16-30 and diag2 31-45
+
     static{ 
 	initTables(); // initialise legalTable and mobilityTable 
+	initStableTables();
+	initEvalTables();
+	for(int x=1;x<9;x++){
+	    for(int y=1;y<9;y++) quadrantBit[x][y]=1<<(((x-1)>>2)+(((y-1)>>2)<<1));
+	}
     }
 
-    Board iboard=new Board(); 
+    Board iboard; 
+    Board evalBoard; // for evaluate()
     
-    undoData udarray[]=new undoData[30]; 
+    undoData udarray[]; 
     // These objects are declared here (so they are accessible to the
-    // run() and negamax() methods.  They are created in the run
-    // method, in advance, so that they don't need to be created and
+    // run() and negamax() methods.  They come from the search context,
+    // made in advance, so that they don't need to be created and
     // re-created on the fly in negamax(). This gives a large speed
     // improvement - over 40% less time taken.
 
@@ -198,7 +484,7 @@ allow the thread to be started if some checks are failed. */
     /* --------------------------------------------------------------------------- */
     /** Inner class encapsulating data needed to undo a move on the board */
 
-    class undoData{
+    static class undoData{
 	int moveX,moveY;    // the last move made 
 	int byWhom; // by which player? - NB one player can make several moves in
 	// a row if the other player can't move. Could actually just read
@@ -206,6 +492,11 @@ allow the thread to be started if some checks are failed. */
 	int numFlips;       // how many pieces were flipped by that move
 	int flipX[]=new int[19]; // their coordinates. 19 is the theoretical maximum
 	int flipY[]=new int[19]; // no. of pieces that can be flipped in one move.
+	int savedEval;           // incremental evaluation before the move
+	long lines;              // lines changed by the move, as lineBits
+	long savedHash;          // hash key before the move
+	int moves[]=new int[OthSearchContext.MAX_MOVES]; // endgame moves to try here,
+	int keys[]=new int[OthSearchContext.MAX_MOVES];  // best first, and their order
     }
 
 
@@ -215,12 +506,17 @@ allow the thread to be started if some checks are failed. */
 	of each row, column or diagonal.  This allows immediate lookup of the
 	legal moves on that row, column or diagonal, for instance */
   
-    class Board{
+    static class Board{
 	int array[][]=new int[10][10];
 	int row[]=new int[8];       /* row ----- */
 	int column[]=new int[8];    /* column ||||| */  
 	int diag1[]=new int[15];    /* diag1 */   
 	int diag2[]=new int[15];    /* diag2 \\\\\ */   
+	int empties;                /* number of empty squares */
+	int eval;                   /* assess() score for black, if incremental */
+	long hash;                  /* hash key of the pieces, if there is a table */
+	long emptyMask;             /* the empty squares, bit (y-1)*8+(x-1) */
+	int parity;                 /* quadrants with an odd number of empty squares */
     }
 
 
@@ -233,41 +529,103 @@ allow the thread to be started if some checks are failed. */
         The board should also be locked by calling a method in OthPanel.*/
 
     public void run(){
+	Thread thisThread= Thread.currentThread(); 
+
+	int move[]=search(); // search in this thread
+
+	// tell board to make the move
+
+	if(move!=null && signal==thisThread){  // if this thread is still supposed to be running...
+	    setChanged(); // set Observable flag...
+	    notifyObservers(move); // and send move to Observer(s)
+	}
+	return;
+    } // thread terminates
+
+
+    /* --------------------------------------------------------------------------- */
+    /** Does the work for run(), but in the calling thread, so that headless tools
+	can search without an Observer.  Returns {x, y, player, score} for the best
+	move, where score is from the point of view of the player to move, or null
+	if the search was stopped or failed.  A search stopped by its deadline
+	returns the best root move it had finished, if any (see isPartial()). */
+
+    public int[] search(){
+	return search(new int[4]);
+    }
+
+    /** The same, but puts the move in the given array (of at least 4) and
+	returns that, so that the search allocates nothing. */
+
+    public int[] search(int move[]){
+	move=searchRoot(move);
+	long t=stopTime;
+	stopLatency=(stopped || signal!=searchThread) && t!=0 ? System.nanoTime()-t : -1;
+	return move;
+    }
+
+    int[] searchRoot(int result[]){
 	if(!setupYet){
 	    System.out.println("Error: computer player not set up before use.");
-	    return;
+	    return null;
 	}
 	Thread thisThread= Thread.currentThread(); // variables to allow the thread to be
-	signal=thisThread;                         // stopped safely
+	searchThread=thisThread;                   // stopped safely
+	stopped=false;
+	timedOut=false;
+	partial=false;
+	signal=thisThread;
 
 	Thread t=Thread.currentThread(); // instance to allow access to Thread methods
 
+	OthSearchContext ctx=(context!=null) ? context : OthSearchContext.current();
+	iboard=ctx.board;
+
 	int movesFound;
-	int moveCoords[][]=new int[25][3];//up to 25 (x,y,score) triplets giving possible moves
-	// How many moves are possible in theory? Have seen up to 21 in practice, so far
+	int moveCoords[][]=ctx.moveCoords;//(x,y,score) triplets giving possible moves
+	// How many moves are possible in theory? Have seen up to 21 in practice, so far,
+	// and positions with 33 are known
 
 	boolean noMoves=true;
 
 	initBoard(aboard,iboard); 
         // make copy of board, and convert to index representation
 
-	if(solving && (64-pieces<solveDepth)) {depth=20;System.out.println("Solving...");} 
-        // far enough to reach the endgame
+	endgame=solving && (64-pieces<solveDepth);
+	incremental=incrementalEval && !endgame; // solving never calls assess()
+	if(incremental) iboard.eval=fullEval(iboard);
+	if(memory!=null){ // carry on from the last search
+	    table=memory.getTable(endgame);
+	    history=memory.history;
+	    memory.startSearch();
+	}
+	else if(mtdf && table==null) table=new OthHashTable(HASH_BITS);
+	if(table!=null) iboard.hash=OthHashTable.key(iboard.array);
+	if(endgame) {depth=60;if(!analysing)System.out.println("Solving...");} 
+        // far enough to reach the end of the game, even with passes (which
+	// use up a level each)
 	//i.e. we solve the game with 15 to go.
 
-	for(int i=0; i<udarray.length; i++){udarray[i]=new undoData();}
-        //fill array with objects so they don't need to be created on the fly during the 
+	udarray=ctx.undo(depth+1);
+        //array of objects so they don't need to be created on the fly during the 
 	//search process (creating objects is an expensive operation).  We need a different 
 	//object for each search level, so we just index into the array according to our level.
 
 	undoData ud=udarray[depth]; // data to enable us to undo moves
 	//movesFound=findMoves(moveCoords,rootPlayer); // find and count the legal moves
 	movesFound=iFindMoves(iboard,moveCoords,rootPlayer); // testing new version - seems OK
+	boolean scored=false; // are there scores to order the root moves by?
+	if(endgame && !mtdf && orderDepth>0 && movesFound>1){
+	    shallowScores(moveCoords,movesFound);
+	    scored=true;
+	}
+	if(table!=null && movesFound>1) orderRootMoves(moveCoords,movesFound,scored);
+	else if(scored) sortMoves(moveCoords,movesFound);
 
 
 	/* -------------------------------main loop----------------------------------- */
 
-	if(movesFound>1){ // no point searching if there's only one move!
+	if(movesFound>1 || analysing){ // no point searching if there's only one move!
 	    //for(int deep=depth-3;deep<depth;deep+=2){ 
 	    // disable iterative deepening of search tree
 	    // because it currently slows the game down!
@@ -278,29 +636,67 @@ allow the thread to be started if some checks are failed. */
 
 	    if(solving && (64-pieces<solveDepth)){
 		alpha=-1; beta=1;
-		System.out.println("Player: "+rootPlayer);} // zero-window search for WLD
+		if(!analysing)System.out.println("Player: "+rootPlayer);} // zero-window search for WLD
 	    // This endgame solving is a bit crude.
 	    // The depth at which solving begins should be adjustable.
 
 	    if(solving && (64-pieces<(solveDepth-1))){alpha=-1000000;beta=1000000;} // solve for best win
 
-	    for(int move=0;move<movesFound;move++){
-		iMakeMove(moveCoords[move][0],moveCoords[move][1],rootPlayer,ud);
+	    if(mtdf){
+		alpha=mtdf(moveCoords,alpha,beta);
+		moveCoords[0][2]=alpha;
+		movesFound=1;
+		if(signal!=thisThread) return null; // told to die
+	    }
+	    else{
+		// With an aspiration window, the root is searched with a narrow window
+		// [lo,hi] first.  If the best score is outside it we only know a bound, so
+		// widen the window on that side and search again.
+
+		boolean aspirating=aspiration && !endgame;
+		int lo=alpha,hi=beta,window=ASPIRATION_WINDOW;
+		if(aspirating){lo=expectedScore-window; hi=expectedScore+window;}
+
+		while(true){
+		    alpha=lo; beta=hi;
+		    int bestSoFar=-1; // the root move which last raised alpha in this pass
+
+		    for(int move=0;move<movesFound;move++){
+			iMakeMove(moveCoords[move][0],moveCoords[move][1],rootPlayer,ud);
+
+			value=-negamax(-beta,-alpha,-rootPlayer,depth-1,false); //begin recursion
+			iUndoMove(ud);
+			if(signal!=thisThread){ // check this thread hasn't been told to die 
+			    if(!timedOut || bestSoFar<0) return null;
+			    // out of time: the moves finished so far are still worth having
+			    return partialResult(moveCoords[bestSoFar],alpha,result);
+			}
 
-		value=-negamax(-beta,-alpha,-rootPlayer,depth-1,false); //begin recursion
-		if(value>alpha) alpha=value;
-		moveCoords[move][2]=value;
-		if(solving && (64-pieces<solveDepth)) 
-                System.out.println("Move: "+moveCoords[move][0]+","+moveCoords[move][1]+" Score: "+value);
-	
-		
-		iUndoMove(ud);
+			if(value>alpha) {alpha=value; bestSoFar=move;}
+			moveCoords[move][2]=value;
+			if(solving && (64-pieces<solveDepth) && !analysing) 
+			System.out.println("Move: "+moveCoords[move][0]+","+moveCoords[move][1]+" Score: "+value);
 
-		if(solving && (64-pieces==(solveDepth-1)) && alpha==1) {movesFound=move;break;}
-		// bit if a hack to break out of loop as soon as a win found if WLD solving
+			if(solving && (64-pieces==(solveDepth-1)) && alpha>=1) {movesFound=move+1;break;}
+			// bit if a hack to break out of loop as soon as a win found if WLD solving
 
-		if(signal!=thisThread) return; // check this thread hasn't been told to die 
-		t.yield(); // allow minimal cooperation on non-timeslicing platforms
+			t.yield(); // allow minimal cooperation on non-timeslicing platforms
+
+			if(aspirating && alpha>=hi) break; // failed high, no need to look further
+		    }
+
+		    if(!aspirating) break;
+		    if(alpha>=hi && hi<1000000){ // failed high
+			window*=4;
+			hi=Math.min(1000000,expectedScore+window);
+		    }
+		    else if(alpha<=lo && lo>-1000000){ // failed low
+			window*=4;
+			lo=Math.max(-1000000,expectedScore-window);
+		    }
+		    else break; // score inside the window, so it is exact
+		    researches++;
+		}
 	    }
 
 	// Save the solved board, player and score to a database
@@ -314,68 +710,452 @@ allow the thread to be started if some checks are failed. */
 	else if(movesFound==0)
 	    {
 		System.out.println("Error: computer found no moves.");
-		return; // The computer can't move. This indicates an error because
+		return null; // The computer can't move. This indicates an error because
 		// this method should only be called if there is a move available
 	    }
   
 	/* ---------------------------end main loop----------------------------------- */
 
-	// tell board to make the move
 	// moves are sorted, so best move is first in moveCoords array 
 
-	if(signal==thisThread){  // if this thread is still supposed to be running...
-	    setChanged(); // set Observable flag...
-	    int move[]=new int[3]; // setup object to return to Observer
-            move[0]=moveCoords[0][0];
-	    move[1]=moveCoords[0][1];
-	    move[2]=rootPlayer;
-	    notifyObservers(move); // and send move to Observer(s)
-	}
-	return;
-    } // thread terminates
+	if(signal!=thisThread) return null; // stopped - don't report a move
+	if(memory!=null) savePV(moveCoords[0][0]*10+moveCoords[0][1]);
+	result[0]=moveCoords[0][0]; // fill in object to return to Observer
+	result[1]=moveCoords[0][1];
+	result[2]=rootPlayer;
+	result[3]=moveCoords[0][2]; // score, for analysis
+	return result;
+    }
+
+
+
+    // The move from a search which ran out of time: the best of the root moves
+    // it finished, with its score.
+
+    int[] partialResult(int move[],int score,int result[]){
+	partial=true;
+	if(memory!=null) savePV(move[0]*10+move[1]);
+	result[0]=move[0];
+	result[1]=move[1];
+	result[2]=rootPlayer;
+	result[3]=score;
+	return result;
+    }
+
 
 
+    /* --------------------------------------------------------------------------- */
+    /** MTD(f): finds the score of the root position by a series of zero-window
+	searches.  Each search says whether the score is below a guess g (and
+	gives an upper bound) or not (a lower bound), and the next guess is the
+	bound found, until the bounds meet.  Every search visits mostly the same
+	nodes as the one before, so the transposition table makes them quick.  The
+	best move is put in moveCoords[0] and the score is returned.  Stops early
+	once the score is known to be at or below floor or at or above ceiling, as
+	for WLD solving. */
+
+    int mtdf(int moveCoords[][],int floor,int ceiling){
+	Thread thisThread=Thread.currentThread();
+	long key=iboard.hash ^ (rootPlayer==WHITE ? OthHashTable.whiteToMove : 0);
+	int grain=endgame ? 256 : 1; // endgame scores are all multiples of 256
+	int lower=-1000000,upper=1000000,beta,entryMove;
+	int g=endgame ? 0 : expectedScore; // first guess
+	boolean found=false;
+
+	while(lower<upper && lower<ceiling && upper>floor){
+	    beta=(g==lower) ? g+grain : g; // is the score at least beta?
+	    g=negamax(beta-1,beta,rootPlayer,depth,false);
+	    passes++;
+	    if(g<beta) upper=g;
+	    else lower=g;
+
+	    // The root's best move is in the table.  Only a search which failed
+	    // high has found a move as good as its bound, but take any at first.
+	    entryMove=OthHashTable.move(table.probe(key));
+	    if(entryMove!=0 && (g>=beta || !found)){
+		moveCoords[0][0]=entryMove/10; moveCoords[0][1]=entryMove%10;
+		found=true;
+	    }
+	    if(signal!=thisThread) return g; // the caller checks too
+	    Thread.yield();
+	}
+	return (lower==upper || lower>=ceiling) ? lower : upper;
+    }
+
 
     /* --------------------------------------------------------------------------- */
     /*   Recursive negamax algorithm with alpha-beta pruning - index method        */
+    /*   Fail-soft: the score returned may be outside the window, which gives a    */
+    /*   tighter bound (for the transposition table, and for MTD(f)'s next guess)  */
     /* --------------------------------------------------------------------------- */
 
     int negamax(int alpha, int beta, int player, int level,boolean passed){
 	//System.out.println("Debug: negamax level "+level);
 
+	if(endgame) return endSolve(alpha,beta,player,level,passed);
+	nodes++;
+	if((nodes & POLL_MASK)==0 && stopping()) return 0; // told to stop: unwind
 	if(level<=0) {return assess(player);} //if leafnode evaluate board and return score
 	// NB if this also happens to be an end-of-game node, we won't return
 	// end_assess() as expected. This is, ahem, a feature.  In serious games
 	// endgame solving will be used, which will bypass the problem.
 
-	undoData ud=udarray[level];  // get a spare undoData object to enable us to undo moves
 	int value;
+
+	// Look the position up in the transposition table, if there is one.  The
+	// bounds found before may settle it, or at least narrow the window, and the
+	// best move found before is tried first.
+
+	long key=0;
+	int hashMove=0;
+	if(table!=null){
+	    key=iboard.hash ^ (player==WHITE ? OthHashTable.whiteToMove : 0);
+	    long entry=table.probe(key);
+	    if(entry!=0){
+		if(OthHashTable.depth(entry)>=level){
+		    int lower=OthHashTable.lower(entry),upper=OthHashTable.upper(entry);
+		    if(lower>=beta) return lower;
+		    if(upper<=alpha || lower==upper) return upper;
+		    if(lower>alpha) alpha=lower;
+		    if(upper<beta) beta=upper;
+		}
+		hashMove=OthHashTable.move(entry);
+		if(hashMove!=0 && (iboard.array[hashMove/10][hashMove%10]!=0 || 
+				   !i_legal(hashMove/10,hashMove%10,player))) hashMove=0; // can't trust it
+	    }
+	}
+
+	// Multi-ProbCut, in a selective search.  Not at the root, which must
+	// always find a move.
+
+	if(probCut!=null && level<depth && level<=OthProbCut.MAX_DEPTH &&
+	   OthProbCut.shallowDepth[level]>0){
+	    value=probCut(alpha,beta,player,level,passed);
+	    if(stopped) return 0;
+	    if(value!=NO_CUTOFF) {probCuts++; return value;}
+	}
+
+	undoData ud=udarray[level];  // get a spare undoData object to enable us to undo moves
 	boolean noMoves=true;
 	int startX=1,startY=1;
+	int move=hashMove,best=-1000000,bestMove=0;
+	int lowest=alpha; // the window on entry, for the table
 
-	while(iMakeNextMove2(startX,startY,ud,player)){
-	    startX=ud.moveX; startY=ud.moveY; // how far did we get around board
+	while(true){
+	    if(move!=0) iMakeMove(move/10,move%10,player,ud); // the move from the table
+	    else{
+		if(!iMakeNextMove2(startX,startY,ud,player)) break;
+		startX=ud.moveX; startY=ud.moveY+1; // how far did we get around board
+		if(startY>8){startY=1;startX++;}
+		if(ud.moveX*10+ud.moveY==hashMove){iUndoMove(ud); continue;} // tried it first
+	    }
 	    noMoves=false; // we found a move!
 
 	    value=-negamax(-beta,-alpha,-player,level-1,false);//recurse to next level of search
 	    iUndoMove(ud);
+	    if(stopped) return 0; // don't store or use anything from a stopped search
 
-	    if(value>=beta) return value; // prune search tree
+	    if(value>best){best=value; bestMove=ud.moveX*10+ud.moveY;}
+	    if(value>=beta){ // prune search tree
+		if(history!=null) history[ud.moveX][ud.moveY]+=level*level;
+		break;
+	    }
 	    if(value>alpha) alpha=value; // remember maximum so far - adjust search window
-	    startY++; if(startY>8){startY=1;startX++;} // update startX,startY
+	    move=0;
 	}
 	    
 	if(noMoves){
 	    if(passed) return end_assess(player); // if neither player can move, game has ended
+	    else best=-negamax(-beta,-alpha,-player,level-1,true); 
+	    //recurse to next level of search   
+	    if(stopped) return 0;
+	}
+
+	if(table!=null){
+	    if(best<=lowest) table.store(key,level,-1000000,best,bestMove);   // upper bound
+	    else if(best>=beta) table.store(key,level,best,1000000,bestMove); // lower bound
+	    else table.store(key,level,best,best,bestMove);                   // exact
+	}
+	return best;
+    }
+
+
+    /* --------------------------------------------------------------------------- */
+    /*   The endgame search: negamax to the end of the game, with the moves in a   */
+    /*   good order.  Scores are as end_assess(), and fail-soft as negamax().      */
+    /* --------------------------------------------------------------------------- */
+
+    // With enough empty squares for it to be worth the time, moves which leave
+    // the opponent the fewest replies are tried first, as they lead to the
+    // smallest trees ("fastest first").  Among those, and with fewer empty
+    // squares, moves into a region with an odd number of empty squares come
+    // first: the player who moves last in a region usually does best there, and
+    // with an odd number we can hope to.  The regions are the quadrants of the
+    // board, which stand in well enough for the real regions of connected empty
+    // squares and cost only an XOR to keep up to date.  (Parity first, then
+    // replies, searched half as many nodes again; see OthBench endgame.)
+
+    static final int FASTEST_FIRST_EMPTIES=6; // count replies with more empties than this
+    static final int ETC_EMPTIES=8;  // enhanced transposition cutoffs with at least this many
+
+    // Enhanced transposition cutoffs: while listing the moves, each one is made
+    // and the position after it looked up in the table.  If the opponent's score
+    // there is known to be at most -beta, the move alone gives a cutoff and
+    // nothing need be searched; otherwise the list carries on as usual.  Each
+    // lookup costs a make and undo and a probe, so it isn't done near the end
+    // of the game, where the subtrees are so small it's cheaper to search them.
+
+    int endSolve(int alpha,int beta,int player,int level,boolean passed){
+	nodes++;
+	if((nodes & POLL_MASK)==0 && stopping()) return 0; // told to stop: unwind
+	if(iboard.empties==0) return end_assess(player); 
+	// board full: don't spend two more levels finding that neither side can move,
+	// or a pass earlier on could make the search run out of depth just here
+	if(iboard.empties<=LAST_EMPTIES && level<depth) return solveLast(alpha,beta,player);
+	// (not at the root, which must leave its move in the table for MTD(f))
+
+	int value;
+
+	if(iboard.empties>=STABILITY_EMPTIES){ 
+	    // see if the stable discs alone decide the result
+	    value=stabilityCutoff(alpha,beta,player);
+	    if(value!=NO_CUTOFF) {stabilityCuts++; return value;}
+	}
+
+	// The transposition table, as in negamax(), except that every search goes
+	// to the end of the game, so the depth doesn't matter.
+
+	long key=0;
+	int hashMove=0;
+	if(table!=null){
+	    key=iboard.hash ^ (player==WHITE ? OthHashTable.whiteToMove : 0);
+	    long entry=table.probe(key);
+	    if(entry!=0){
+		int lower=OthHashTable.lower(entry),upper=OthHashTable.upper(entry);
+		if(lower>=beta) return lower;
+		if(upper<=alpha || lower==upper) return upper;
+		if(lower>alpha) alpha=lower;
+		if(upper<beta) beta=upper;
+		hashMove=OthHashTable.move(entry); // only used if it is in the list below
+	    }
+	}
+
+	// list the legal moves in order, best first (insertion sort, as there are few)
+
+	undoData ud=udarray[level];
+	int moves[]=ud.moves,keys[]=ud.keys;
+	int n=0;
+	boolean etc=enhancedCutoffs && table!=null && iboard.empties>=ETC_EMPTIES;
+	long childSide=(player==WHITE) ? 0 : OthHashTable.whiteToMove; // opponent to move
+	for(long e=iboard.emptyMask;e!=0;e&=e-1){
+	    int sq=Long.numberOfTrailingZeros(e);
+	    int x=(sq&7)+1,y=(sq>>3)+1;
+	    if(!i_legal(x,y,player)) continue;
+	    int m=x*10+y,k;
+	    if(m==hashMove) k=Integer.MAX_VALUE;
 	    else{
-		value=-negamax(-beta,-alpha,-player,level-1,true); 
-		//recurse to next level of search   
-		if(value>=beta) return value; // prune search tree
-		if(value>alpha) alpha=value; // remember maximum so far
+		k=((iboard.parity & quadrantBit[x][y])!=0) ? 1 : 0; // odd region
+		if(iboard.empties>FASTEST_FIRST_EMPTIES || etc){
+		    iMakeMove(x,y,player,ud);
+		    if(etc){
+			etcProbes++;
+			long entry=table.probe(iboard.hash ^ childSide);
+			if(entry!=0 && -OthHashTable.upper(entry)>=beta){
+			    value=-OthHashTable.upper(entry);
+			    iUndoMove(ud);
+			    etcCuts++;
+			    table.store(key,level,value,1000000,m); // lower bound
+			    return value;
+			}
+		    }
+		    if(iboard.empties>FASTEST_FIRST_EMPTIES) k-=replies(-player)<<1;
+		    iUndoMove(ud);
+		}
 	    }
+	    int i=n++;
+	    while(i>0 && keys[i-1]<k){moves[i]=moves[i-1]; keys[i]=keys[i-1]; i--;}
+	    moves[i]=m; keys[i]=k;
+	}
+
+	int best=-1000000,bestMove=0;
+	int lowest=alpha; // the window on entry, for the table
+
+	for(int i=0;i<n;i++){
+	    int m=moves[i];
+	    iMakeMove(m/10,m%10,player,ud);
+	    value=-endSolve(-beta,-alpha,-player,level-1,false);
+	    iUndoMove(ud);
+	    if(stopped) return 0; // don't store or use anything from a stopped search
+
+	    if(value>best){best=value; bestMove=m;}
+	    if(value>=beta) break; // prune search tree
+	    if(value>alpha) alpha=value;
+	}
+
+	if(n==0){
+	    if(passed) return end_assess(player); // if neither player can move, game has ended
+	    best=-endSolve(-beta,-alpha,-player,level-1,true); 
+	    if(stopped) return 0;
+	}
+
+	if(table!=null){
+	    if(best<=lowest) table.store(key,level,-1000000,best,bestMove);   // upper bound
+	    else if(best>=beta) table.store(key,level,best,1000000,bestMove); // lower bound
+	    else table.store(key,level,best,best,bestMove);                   // exact
+	}
+	return best;
+    }
+
+    /* --------------------------------------------------------------------------- */
+    /*   The last few empty squares.  Most of the nodes of an endgame search are   */
+    /*   here, so they use bitboards (as OthPosition does) copied from the board   */
+    /*   once, have a method for each number of empty squares with the squares     */
+    /*   written out rather than looped over, keep no undo records or hash keys,   */
+    /*   and count the discs themselves.  own is the player to move's pieces, opp  */
+    /*   the other's; scores are as end_assess(), and fail-soft.                   */
+    /* --------------------------------------------------------------------------- */
+
+    static final int LAST_EMPTIES=4; // solved this way with this many empty squares
+
+    int solveLast(int alpha,int beta,int player){
+	long own=pieceMask(iboard,player),opp=pieceMask(iboard,-player);
+
+	// list the empty squares, 6 bits each, those in odd regions first
+	int list=0,n=0;
+	for(int odd=1;odd>=0;odd--){
+	    for(long e=iboard.emptyMask;e!=0;e&=e-1){
+		int sq=Long.numberOfTrailingZeros(e);
+		int inOdd=((iboard.parity & quadrantBit[(sq&7)+1][(sq>>3)+1])!=0) ? 1 : 0;
+		if(inOdd==odd) list|=sq<<(6*n++);
+	    }
+	}
+	int e1=list&63,e2=(list>>6)&63,e3=(list>>12)&63,e4=(list>>18)&63;
+	switch(n){
+	case 1: return solve1(own,opp,e1);
+	case 2: return solve2(own,opp,alpha,beta,e1,e2,false);
+	case 3: return solve3(own,opp,alpha,beta,e1,e2,e3,false);
+	default: return solve4(own,opp,alpha,beta,e1,e2,e3,e4,false);
+	}
+    }
+
+    // one empty square: count the flips, without making the move
+    int solve1(long own,long opp,int sq){
+	nodes++;
+	int diff=Long.bitCount(own)-Long.bitCount(opp);
+	int n=Long.bitCount(OthPosition.flips(own,opp,sq));
+	if(n>0) return (diff+2*n+1)<<8;
+	n=Long.bitCount(OthPosition.flips(opp,own,sq)); // we pass; can they move?
+	if(n>0) return (diff-2*n-1)<<8;
+	return diff<<8; // the game ends with the square empty
+    }
+
+    int solve2(long own,long opp,int alpha,int beta,int e1,int e2,boolean passed){
+	nodes++;
+	int best=-1000000,value;
+	long f;
+	if((f=OthPosition.flips(own,opp,e1))!=0){
+	    best=-solve1(opp^f,own|f|1L<<e1,e2);
+	    if(best>=beta) return best;
+	}
+	if((f=OthPosition.flips(own,opp,e2))!=0){
+	    value=-solve1(opp^f,own|f|1L<<e2,e1);
+	    if(value>best) best=value;
+	}
+	if(best>-1000000) return best;
+	if(passed) return (Long.bitCount(own)-Long.bitCount(opp))<<8; // neither can move
+	return -solve2(opp,own,-beta,-alpha,e1,e2,true);
+    }
+
+    int solve3(long own,long opp,int alpha,int beta,int e1,int e2,int e3,boolean passed){
+	nodes++;
+	int best=-1000000,value;
+	long f;
+	if((f=OthPosition.flips(own,opp,e1))!=0){
+	    value=-solve2(opp^f,own|f|1L<<e1,-beta,-alpha,e2,e3,false);
+	    if(value>=beta) return value;
+	    best=value;
+	    if(value>alpha) alpha=value;
+	}
+	if((f=OthPosition.flips(own,opp,e2))!=0){
+	    value=-solve2(opp^f,own|f|1L<<e2,-beta,-alpha,e1,e3,false);
+	    if(value>=beta) return value;
+	    if(value>best) best=value;
+	    if(value>alpha) alpha=value;
+	}
+	if((f=OthPosition.flips(own,opp,e3))!=0){
+	    value=-solve2(opp^f,own|f|1L<<e3,-beta,-alpha,e1,e2,false);
+	    if(value>best) best=value;
+	}
+	if(best>-1000000) return best;
+	if(passed) return (Long.bitCount(own)-Long.bitCount(opp))<<8;
+	return -solve3(opp,own,-beta,-alpha,e1,e2,e3,true);
+    }
+
+    int solve4(long own,long opp,int alpha,int beta,int e1,int e2,int e3,int e4,boolean passed){
+	nodes++;
+	int best=-1000000,value;
+	long f;
+	if((f=OthPosition.flips(own,opp,e1))!=0){
+	    value=-solve3(opp^f,own|f|1L<<e1,-beta,-alpha,e2,e3,e4,false);
+	    if(value>=beta) return value;
+	    best=value;
+	    if(value>alpha) alpha=value;
+	}
+	if((f=OthPosition.flips(own,opp,e2))!=0){
+	    value=-solve3(opp^f,own|f|1L<<e2,-beta,-alpha,e1,e3,e4,false);
+	    if(value>=beta) return value;
+	    if(value>best) best=value;
+	    if(value>alpha) alpha=value;
+	}
+	if((f=OthPosition.flips(own,opp,e3))!=0){
+	    value=-solve3(opp^f,own|f|1L<<e3,-beta,-alpha,e1,e2,e4,false);
+	    if(value>=beta) return value;
+	    if(value>best) best=value;
+	    if(value>alpha) alpha=value;
+	}
+	if((f=OthPosition.flips(own,opp,e4))!=0){
+	    value=-solve3(opp^f,own|f|1L<<e4,-beta,-alpha,e1,e2,e3,false);
+	    if(value>best) best=value;
 	}
+	if(best>-1000000) return best;
+	if(passed) return (Long.bitCount(own)-Long.bitCount(opp))<<8;
+	return -solve4(opp,own,-beta,-alpha,e1,e2,e3,e4,true);
+    }
 
-	return alpha;
+    /** The number of legal moves player has (for ordering the endgame moves) */
+    int replies(int player){
+	int n=0;
+	for(long e=iboard.emptyMask;e!=0;e&=e-1){
+	    int sq=Long.numberOfTrailingZeros(e);
+	    if(i_legal((sq&7)+1,(sq>>3)+1,player)) n++;
+	}
+	return n;
+    }
+
+  
+    /* --------------------------------------------------------------------------- */
+    /** The ProbCut test: searches to the shallow depth, with a zero window at the
+	score which would predict a deep score of beta (or alpha) plus (or minus)
+	threshold standard deviations.  Returns beta or alpha if the deep search
+	would very probably fail high or low, otherwise NO_CUTOFF. */
+
+    int probCut(int alpha,int beta,int player,int level,boolean passed){
+	int stage=OthProbCut.stage(iboard.empties);
+	if(!probCut.has(stage,level)) return NO_CUTOFF;
+	int shallow=OthProbCut.shallowDepth[level];
+	double a=probCut.a[stage][level],b=probCut.b[stage][level];
+	double margin=probCut.threshold*probCut.sigma[stage][level];
+	int bound;
+
+	if(beta<1000000){
+	    bound=(int)Math.ceil((beta+margin-b)/a);
+	    if(bound<1000000 && negamax(bound-1,bound,player,shallow,passed)>=bound) return beta;
+	}
+	if(alpha>-1000000){
+	    bound=(int)Math.floor((alpha-margin-b)/a);
+	    if(bound>-1000000 && negamax(bound,bound+1,player,shallow,passed)<=bound) return alpha;
+	}
+	return NO_CUTOFF;
     }
 
   
@@ -510,8 +1290,12 @@ allow the thread to be started if some checks are failed. */
 		if(flips<=0) continue;
 		ud.numFlips=flips;
 		iboard.array[x][y]=player; // place new piece 
+		iboard.empties--;
+		iboard.emptyMask^=1L<<((y-1)*8+x-1);
+		iboard.parity^=quadrantBit[x][y];
 		ud.byWhom=player;    // undo data
 		ud.moveX=x; ud.moveY=y; // undo data
+		if(incremental) evalBefore(ud);
 
 		// update the indices for that piece using x,y
                 if(player==BLACK){
@@ -578,6 +1362,8 @@ allow the thread to be started if some checks are failed. */
 		    }
 
 		}
+		if(incremental) evalAfter(ud);
+		if(table!=null) updateHash(ud);
 		return true; // we found and made a move
 	    }
 	}
@@ -657,8 +1443,12 @@ allow the thread to be started if some checks are failed. */
 
 	// place new piece 
 	iboard.array[x][y]=player;  
+	iboard.empties--;
+	iboard.emptyMask^=1L<<((y-1)*8+x-1);
+	iboard.parity^=quadrantBit[x][y];
 	ud.byWhom=player;    // undo data
 	ud.moveX=x; ud.moveY=y; // undo data
+	if(incremental) evalBefore(ud);
 
 	// update the indices for that piece using x,y
 
@@ -705,6 +1495,8 @@ allow the thread to be started if some checks are failed. */
 	    else      iboard.diag2[(7-xx)+yy]+=flipOffsetTable[p][xx-1];
 
 	}
+	if(incremental) evalAfter(ud);
+	if(table!=null) updateHash(ud);
 
     }
 
@@ -721,6 +1513,11 @@ allow the thread to be started if some checks are failed. */
 	xx=ud.moveX; yy=ud.moveY;  
 	// use these a lot, so second-guess compiler!
 	iboard.array[xx][yy]=0; // remove piece
+	iboard.empties++;
+	iboard.emptyMask^=1L<<((yy-1)*8+xx-1);
+	iboard.parity^=quadrantBit[xx][yy];
+	if(incremental) iboard.eval=ud.savedEval;
+	if(table!=null) iboard.hash=ud.savedHash;
 
 	//if(ud.byWhom==BLACK) p=0;
 	//else p=1;
@@ -805,6 +1602,66 @@ allow the thread to be started if some checks are failed. */
 
 
 
+    /* --------------------------------------------------------------------------- */
+    /** Puts the root moves in a good order to search them: the move the last
+	search's principal variation expects here, then the move in the table,
+	then the rest by their scores from shallowScores() if scored, otherwise by
+	their history counts. */
+
+    void orderRootMoves(int moveCoords[][],int movesFound,boolean scored){
+	long key=iboard.hash ^ (rootPlayer==WHITE ? OthHashTable.whiteToMove : 0);
+	int expected=(memory!=null) ? memory.pvMove(key) : 0;
+	int tableMove=OthHashTable.move(table.probe(key));
+	for(int i=0;i<movesFound;i++){
+	    int m=moveCoords[i][0]*10+moveCoords[i][1];
+	    if(m==expected) moveCoords[i][2]=Integer.MAX_VALUE;
+	    else if(m==tableMove) moveCoords[i][2]=Integer.MAX_VALUE-1;
+	    else if(scored) continue;
+	    else if(history!=null) moveCoords[i][2]=history[moveCoords[i][0]][moveCoords[i][1]];
+	    else moveCoords[i][2]=0;
+	}
+	sortMoves(moveCoords,movesFound); // the search puts scores here afterwards
+    }
+
+    /** Before solving: scores each root move with a midgame search to
+	orderDepth, for putting them in order.  Midgame scores mustn't go in the
+	endgame table, so the memory's midgame table is used, if there is one. */
+
+    void shallowScores(int moveCoords[][],int movesFound){
+	OthHashTable endgameTable=table;
+	endgame=false;
+	table=(memory!=null) ? memory.getTable(false) : null;
+	undoData ud=udarray[depth];
+	for(int i=0;i<movesFound;i++){
+	    iMakeMove(moveCoords[i][0],moveCoords[i][1],rootPlayer,ud);
+	    moveCoords[i][2]=-negamax(-1000000,1000000,-rootPlayer,orderDepth-1,false);
+	    iUndoMove(ud);
+	}
+	endgame=true;
+	table=endgameTable;
+    }
+
+    /** Saves the principal variation in the game memory: the move chosen, then
+	the best move the table has for each position after it, as far as that
+	goes.  The board is left as it was. */
+
+    void savePV(int move){
+	int player=rootPlayer,n=0;
+	while(n<memory.pvKeys.length && n<udarray.length){
+	    long key=iboard.hash ^ (player==WHITE ? OthHashTable.whiteToMove : 0);
+	    if(n>0) move=OthHashTable.move(table.probe(key));
+	    if(move==0 || iboard.array[move/10][move%10]!=0 || 
+	       !i_legal(move/10,move%10,player)) break; // end of the line
+	    memory.pvKeys[n]=key;
+	    memory.pvMoves[n]=move;
+	    iMakeMove(move/10,move%10,player,udarray[n++]);
+	    player=-player;
+	}
+	memory.pvLength=n;
+	while(n>0) iUndoMove(udarray[--n]);
+    }
+
+
     /* --------------------------------------------------------------------------- */
     /*                 sort array of moves inefficiently!                          */
     /*  This is a pretty nasty sort method, but there's usually less than 10 items */
@@ -830,11 +1687,14 @@ allow the thread to be started if some checks are failed. */
 
     // A fairly feeble evaluation function which uses mobility, favours corners
     // and discourages X- and C-squares (the ones adjacent to corners). Much better, however,
-    // than just counting pieces, or only assigning weights to squares.
+    // than just counting pieces, or only assigning weights to squares.  Also counts
+    // stable pieces on the edges (corners are counted twice, once for each edge).
 
     int assess(int player){
 	int score=0;
 
+	if(incremental) return (player==BLACK) ? iboard.eval : -iboard.eval;
+
 	// first assess for black, then negate if necessary
 
 // 	for(int x=1; x<9; x++){
@@ -869,6 +1729,11 @@ allow the thread to be started if some checks are failed. */
 	score-=iboard.array[7][1]<<2;
 	score-=iboard.array[8][2]<<2;
 
+	// stable pieces on the edges
+
+	score+=STABLE_WEIGHT*(stableScoreTable[iboard.row[0]]+stableScoreTable[iboard.row[7]]+
+			      stableScoreTable[iboard.column[0]]+stableScoreTable[iboard.column[7]]);
+
 	if(player==BLACK)return mobility(iboard,BLACK)+score;
 	else return mobility(iboard,WHITE)-score;
     }
@@ -921,12 +1786,27 @@ allow the thread to be started if some checks are failed. */
 
 	// Convert to index representation
 
-	int digitwhite[]={4374,1458,486,162,54,18,6,2}; 
-	int digitblack[]={2187,729,243,81,27,9,3,1};
+	iboard.empties=0;
+	iboard.emptyMask=0;
+	iboard.parity=0;
+	for(int x=1;x<9;x++){
+	    for(int y=1;y<9;y++){
+		if(array[x][y]!=0) continue;
+		iboard.empties++;
+		iboard.emptyMask|=1L<<((y-1)*8+x-1);
+		iboard.parity^=quadrantBit[x][y];
+	    }
+	}
+
+	int digitwhite[]=placeOffsetTableW; // {4374,1458,486,162,54,18,6,2}
+	int digitblack[]=placeOffsetTableB; // {2187,729,243,81,27,9,3,1}
 	int digit[]; 
 	int howfar;
 
-	// indices should be initialised to zero when created
+	// indices start at zero (the board may have been used before)
+
+	for(int i=0;i<8;i++){iboard.row[i]=0; iboard.column[i]=0;}
+	for(int i=0;i<15;i++){iboard.diag1[i]=0; iboard.diag2[i]=0;}
 
 	for (int x=1;x<9;x++) /* columns */
 	    {
@@ -955,12 +1835,11 @@ allow the thread to be started if some checks are failed. */
 
     static void initTables(){
 	int line[]=new int[8];
-	int b_entry,w_entry,mobil,pmobil,index;
-	int b_flips[]=new int[1];
-	int w_flips[]=new int[1]; 
+	int b_entry,w_entry,mobil,pmobil,index,b_flips,w_flips;
+	long black,white;
 
 	for(int i=0;i<6561;i++){ // loop through all possible ternary values
-	    b_entry = w_entry = b_flips[0] = w_flips[0]= mobil = pmobil = 0;
+	    b_entry = w_entry = mobil = pmobil = 0;
 
 	    // Each ternary value corresponds to a different configuration of
 	    // black, white, and empty squares along a line.  We then work out
@@ -1001,11 +1880,26 @@ allow the thread to be started if some checks are failed. */
 	    else if(index>=1) {index-=1;line[7]=BLACK;}
 	    else line[7]=0;
 
+	    // The flips come from the same rules code as OthPanel and the headless
+	    // tools use, by putting the line on the top row of an otherwise empty
+	    // board, so the tables can't disagree with them.
+
+	    black=white=0;
+	    for(int j=0;j<8;j++){
+		if(line[j]==BLACK) black|=1L<<j;
+		else if(line[j]==WHITE) white|=1L<<j;
+	    }
+
 	    for(int j=0;j<8;j++){ // for each position along the line...
-		if(linelegal(line,j,BLACK,b_flips)) {b_entry |= (1<<j);mobil++;} /*set bit*/      
-		if(linelegal(line,j,WHITE,w_flips)) {w_entry |= (1<<j);mobil--;} /*set bit*/
-		flipsTable[0][i][j]=(byte)b_flips[0]; // store which pieces are flipped
-		flipsTable[1][i][j]=(byte)w_flips[0]; // store which pieces are flipped
+		b_flips=w_flips=0;
+		if(line[j]==0){
+		    b_flips=(int)OthPosition.flips(black,white,j);
+		    w_flips=(int)OthPosition.flips(white,black,j);
+		}
+		if(b_flips!=0) {b_entry |= (1<<j);mobil++;} /*set bit*/      
+		if(w_flips!=0) {w_entry |= (1<<j);mobil--;} /*set bit*/
+		flipsTable[0][i][j]=(byte)b_flips; // store which pieces are flipped
+		flipsTable[1][i][j]=(byte)w_flips; // store which pieces are flipped
 
 	    }        // todo: assess potential mobility
 	    legalTable[0][i]=(byte)b_entry;  // store which positions were legal for Black
@@ -1016,64 +1910,6 @@ allow the thread to be started if some checks are failed. */
 	return;
     }
 
-    /* --------------------------------------------------------------------------- */
-    /** Method used in creating lookup tables. Finds whether any pieces are flipped 
-	on a given direction by placing a piece of given colour at a given location.
-	The coding in this method is thoroughly disgusting, but is so unimportant
-	that I haven't got round to tidying it up, since it works fine.*/
-
-    static boolean linelegal(int line[],int position,int colour,int flips[]){
-	int loop,count;
-
-	flips[0]=0;  //  hack to get a non-primitive variable that we can play with
-	//  and get the results back
-
-	// check if position is unoccupied
-
-	if (line[position] != 0) return false;
-
-	/* check left */
-	if(position>1)
-	    {
-		if (line[position-1]==-colour)
-		    {
-			for(loop=position-2;loop>=0;loop--)
-			    {
-				if (line[loop]==colour) {
-				    while(++loop<position) {flips[0] |=(1<<loop);}
-				    //return true;
-				    break;
-				}
-				else if (line[loop]==0) break;
-			    }
-		    }
-	    }
-
-	/* check right */
-	if(position<6)
-	    {
-		if (line[position+1]==-colour)
-		    {
-			for(loop=position+2;loop<8;loop++)
-			    {
-				if (line[loop]==colour) {
-				    while(--loop>position){flips[0] |=(1<<loop);} 
-				    //return true;
-				    break;
-				}
-				else if (line[loop]==0) break;
-			    }
-		    }
-	    }
- 
-	if(flips[0]==0)return false;  /* ie haven't turned any counters yet */
-	else {
-	    return true;  
-	}
-
-    }
-
-
     /* --------------------------------------------------------------------------- */
     /** Calculates the mobility (and potentially other quantities lumped in) by table lookup */ 
     private int mobility(Board iboard,int player){
@@ -1128,6 +1964,283 @@ allow the thread to be started if some checks are failed. */
     }
 
 
+    /* --------------------------------------------------------------------------- */
+    /*                          incremental evaluation                             */
+    /* --------------------------------------------------------------------------- */
+
+    // assess() is a sum of a score for each line (looked up from its index) and a
+    // score for each piece on a corner, X or C square, so when a move is made we
+    // only need to re-score the lines and squares which it changed.  The undo
+    // just puts back the old total.
+
+    /** Called by the make methods once the flips are known but before the indices
+	have changed: takes off the scores of the lines about to change, and adds
+	the change in the square scores. */
+    void evalBefore(undoData ud){
+	int x=ud.moveX,y=ud.moveY;
+	long lines=lineBits[x][y];
+	int squares=squareWeight[x][y];
+
+	for(int i=0;i<ud.numFlips;i++){
+	    x=ud.flipX[i]; y=ud.flipY[i];
+	    lines|=lineBits[x][y];
+	    squares+=squareWeight[x][y]<<1; // goes from -1 to +1, or vice versa
+	}
+	ud.lines=lines;
+	ud.savedEval=iboard.eval;
+	iboard.eval+=ud.byWhom*squares-lineEval(iboard,lines);
+    }
+
+    /** Called by the make methods after the indices have changed: adds back the
+	new scores of the changed lines */
+    void evalAfter(undoData ud){
+	iboard.eval+=lineEval(iboard,ud.lines);
+    }
+
+    /** Sum of the scores for the given lines (bits as lineBits) */
+    int lineEval(Board iboard,long lines){
+	int sum=0,i;
+	while(lines!=0){
+	    i=Long.numberOfTrailingZeros(lines); lines&=lines-1;
+	    if(i<8) sum+=rowEval[i][iboard.row[i]];
+	    else if(i<16) sum+=columnEval[i-8][iboard.column[i-8]];
+	    else if(i<31) sum+=diag1Eval[i-16][iboard.diag1[i-16]];
+	    else sum+=diag2Eval[i-31][iboard.diag2[i-31]];
+	}
+	return sum;
+    }
+
+    /** The whole evaluation for black, from scratch (same as assess(BLACK) 
+	when not incremental) */
+    int fullEval(Board iboard){
+	int sum=lineEval(iboard,(1L<<46)-1);
+	for(int x=1;x<9;x++){
+	    for(int y=1;y<9;y++){
+		sum+=squareWeight[x][y]*iboard.array[x][y];
+	    }
+	}
+	return sum;
+    }
+
+    /** assess(BLACK) for a board array (10x10) outside a search, from scratch.
+	For evaluating many positions, OthBatchEval is much quicker. */
+    int evaluate(int array[][]){
+	if(evalBoard==null) evalBoard=new Board();
+	initBoard(array,evalBoard);
+	return fullEval(evalBoard);
+    }
+
+    /** Sets up the tables used by the incremental evaluation, from the ones used by
+	assess().  Must be called after initStableTables(). */
+    static void initEvalTables(){
+	int edge[]=new int[6561];
+	int none[]=new int[6561];
+	for(int i=0;i<6561;i++){
+	    edge[i]=mobilityTable[i]+STABLE_WEIGHT*stableScoreTable[i];
+	}
+	for(int i=0;i<8;i++){
+	    rowEval[i]=(i==0 || i==7) ? edge : mobilityTable;
+	    columnEval[i]=(i==0 || i==7) ? edge : mobilityTable;
+	}
+	for(int i=0;i<15;i++){
+	    diag1Eval[i]=(i>=3 && i<=11) ? mobilityTable : none;
+	    diag2Eval[i]=(i>=3 && i<=11) ? mobilityTable : none;
+	}
+
+	// corners, X squares and C squares, as in assess()
+	int corners[][]={{1,1,2,2,1,2,2,1},{8,8,7,7,7,8,8,7},{1,8,2,7,1,7,2,8},{8,1,7,2,7,1,8,2}};
+	for(int c=0;c<4;c++){
+	    int sq[]=corners[c];
+	    squareWeight[sq[0]][sq[1]]=32; // corner
+	    squareWeight[sq[2]][sq[3]]=-8; // X
+	    squareWeight[sq[4]][sq[5]]=-4; // C
+	    squareWeight[sq[6]][sq[7]]=-4; // C
+	}
+
+	for(int x=1;x<9;x++){
+	    for(int y=1;y<9;y++){
+		long lines=(1L<<(y-1)) | (1L<<(8+x-1));
+		int d1=x+y-2,d2=(7-x)+y;
+		if(d1>=3 && d1<=11) lines|=1L<<(16+d1); // others always score 0
+		if(d2>=3 && d2<=11) lines|=1L<<(31+d2);
+		lineBits[x][y]=lines;
+	    }
+	}
+    }
+
+
+    /* --------------------------------------------------------------------------- */
+    /** Brings the hash key up to date after a move; called by the make methods
+	once the flips are known. */
+    void updateHash(undoData ud){
+	ud.savedHash=iboard.hash;
+	long key=iboard.hash ^ OthHashTable.pieceKey[(ud.byWhom==BLACK) ? 0 : 1][ud.moveX][ud.moveY];
+	for(int i=0;i<ud.numFlips;i++){
+	    key^=OthHashTable.flipKey[ud.flipX[i]][ud.flipY[i]];
+	}
+	iboard.hash=key;
+    }
+
+
+    /* --------------------------------------------------------------------------- */
+    /*                              stable discs                                   */
+    /* --------------------------------------------------------------------------- */
+
+    static final int NO_CUTOFF=Integer.MIN_VALUE;
+
+    /** Endgame stability cutoff.  The player will end up with at least as many
+	pieces as they have stable pieces now, and the opponent likewise, which
+	bounds the final score.  If the bounds are outside the alpha-beta window
+	there's no point searching, and the bound is returned; otherwise returns
+	NO_CUTOFF.  Scores are scaled as end_assess(). */
+    int stabilityCutoff(int alpha,int beta,int player){
+
+	// quick check that a cutoff is possible at all: the player would need more
+	// than 32+beta/512 stable pieces, or the opponent more than 32-alpha/512,
+	// and neither can have more than all the pieces on the board
+
+	int most=64-iboard.empties;
+	if(64+(beta>>8)>2*most && 64-(alpha>>8)>2*most) return NO_CUTOFF;
+
+	long black=pieceMask(iboard,BLACK);
+	long white=pieceMask(iboard,WHITE);
+	long own=(player==BLACK) ? black : white;
+	long opp=(player==BLACK) ? white : black;
+
+	// edges first, as they are much cheaper and usually all there is
+
+	long stable=edgeStable(iboard);
+	int lower=(2*Long.bitCount(stable&own)-64)<<8;
+	if(lower>=beta) return lower;
+	int upper=(64-2*Long.bitCount(stable&opp))<<8;
+	if(upper<=alpha) return upper;
+
+	stable|=fullLineStable(iboard);
+	lower=(2*Long.bitCount(stable&own)-64)<<8;
+	if(lower>=beta) return lower;
+	upper=(64-2*Long.bitCount(stable&opp))<<8;
+	if(upper<=alpha) return upper;
+
+	return NO_CUTOFF;
+    }
+
+    /** Returns a mask of the stable pieces (of either colour) on the board */
+    long stableDiscs(Board iboard){
+	return edgeStable(iboard) | fullLineStable(iboard);
+    }
+
+    /** Mask of the pieces on the edges which can never be flipped */
+    long edgeStable(Board iboard){
+	return (stableTable[iboard.row[0]]&0xffL) |
+	    ((stableTable[iboard.row[7]]&0xffL)<<56) |
+	    columnSpread[stableTable[iboard.column[0]]&0xff] |
+	    (columnSpread[stableTable[iboard.column[7]]&0xff]<<7);
+    }
+
+    /** Mask of the pieces which can never be flipped because every line through
+	them is full - you can only flip pieces on a line with an empty square. */
+    long fullLineStable(Board iboard){
+	long rows=0,columns=0,diags1=0,diags2=0;
+
+	for(int i=0;i<8;i++){
+	    if(((blackBits[iboard.row[i]]|whiteBits[iboard.row[i]])&0xff)==0xff) 
+		rows|=rowMask[i];
+	    if(((blackBits[iboard.column[i]]|whiteBits[iboard.column[i]])&0xff)==0xff) 
+		columns|=columnMask[i];
+	}
+	if((rows|columns)==0) return 0; // nothing can be stable this way
+
+	int length,full;
+	for(int i=0;i<15;i++){
+	    length=(i<8) ? i+1 : 15-i;  // diagonals use the first 'length' squares
+	    full=(1<<length)-1;
+	    if(((blackBits[iboard.diag1[i]]|whiteBits[iboard.diag1[i]])&full)==full) 
+		diags1|=diag1Mask[i];
+	    if(((blackBits[iboard.diag2[i]]|whiteBits[iboard.diag2[i]])&full)==full) 
+		diags2|=diag2Mask[i];
+	}
+	return rows & columns & diags1 & diags2;
+    }
+
+    /** Mask of one player's pieces, built up a row at a time from the indices */
+    long pieceMask(Board iboard,int player){
+	byte bits[]=(player==BLACK) ? blackBits : whiteBits;
+	long mask=0;
+	for(int i=0;i<8;i++){
+	    mask|=(bits[iboard.row[i]]&0xffL)<<(8*i);
+	}
+	return mask;
+    }
+
+    /* --------------------------------------------------------------------------- */
+    /** Initialise the tables for stable pieces.  Must be called after initTables(),
+	as it uses flipsTable. */
+
+    static void initStableTables(){
+	int index,digit;
+
+	for(int i=0;i<6561;i++){ // which squares of each line are black or white?
+	    index=i;
+	    for(int j=0;j<8;j++){
+		digit=index/placeOffsetTableB[j];
+		index%=placeOffsetTableB[j];
+		if(digit==1) blackBits[i]|=(byte)(1<<j);
+		else if(digit==2) whiteBits[i]|=(byte)(1<<j);
+	    }
+	}
+
+	boolean done[]=new boolean[6561];
+	for(int i=0;i<6561;i++){
+	    stableEdge(i,done);
+	    int stable=stableTable[i]&0xff;
+	    stableScoreTable[i]=Integer.bitCount(stable&blackBits[i]&0xff)-
+		Integer.bitCount(stable&whiteBits[i]&0xff);
+	}
+
+	for(int x=1;x<9;x++){
+	    for(int y=1;y<9;y++){
+		long bit=1L<<((y-1)*8+(x-1));
+		rowMask[y-1]|=bit;
+		columnMask[x-1]|=bit;
+		diag1Mask[x+y-2]|=bit;
+		diag2Mask[(7-x)+y]|=bit;
+	    }
+	}
+	for(int b=0;b<256;b++){
+	    for(int j=0;j<8;j++){
+		if((b>>j & 1)==1) columnSpread[b]|=1L<<(j*8);
+	    }
+	}
+    }
+
+    /** Works out which pieces on an edge with index i can never be flipped.
+	Pieces on an edge can only be flipped along the edge, and any empty square
+	on it might be filled by either player (the move could be legal because of
+	pieces off the edge).  So a piece is stable if it isn't flipped by any of
+	those moves, and is still stable afterwards.  Results are saved in
+	stableTable, so each index is only worked out once. */
+
+    static int stableEdge(int i,boolean done[]){
+	if(done[i]) return stableTable[i]&0xff;
+	int stable=(blackBits[i]|whiteBits[i])&0xff; // start with all the pieces
+
+	for(int j=0;j<8 && stable!=0;j++){
+	    if(((blackBits[i]|whiteBits[i])>>j & 1)==1) continue; // not empty
+	    for(int p=0;p<2;p++){ // p=0 black, p=1 white, as in flipsTable
+		int flips=flipsTable[p][i][j]&0xff;
+		int next=i+placeOffsetTable[p][j];
+		for(int k=0;k<8;k++){
+		    if((flips>>k & 1)==1) next+=flipOffsetTable[p][k];
+		}
+		stable&=~flips & stableEdge(next,done);
+	    }
+	}
+	stableTable[i]=(byte)stable;
+	done[i]=true;
+	return stable;
+    }
+
+
     /*-------------------------------------------------------------------*/
     /** check whether a specified move is legal.  Requires the board in
 	index representation. */
@@ -1183,40 +2296,66 @@ allow the thread to be started if some checks are failed. */
 
 
 
-    void saveToDatabase(Board iboard,int rootPlayer, int value){
-	long black=0;
-	long white=0;  // encode board as two 64-bit numbers, one for each colour
-	int bit=0;
-
-	//byte player=(byte)rootPlayer;
-	//byte value=(byte)value;
+    /* --------------------------------------------------------------------------- */
+    /** Appends a solved position to database.dat, in its canonical form (see
+	OthPosition) so that the 8 equivalent positions share one record.  Positions
+	already in the file are not written again. */
 
-	for(int x=1;x<9;x++){
-	    for(int y=1;y<9;y++){
-		if(iboard.array[x][y]==BLACK) black |=1<<bit;
-		else if(iboard.array[x][y]==WHITE) white |=1<<bit;
-		bit++;
+    void saveToDatabase(Board iboard,int rootPlayer, int value){
+	OthPosition pos=new OthPosition();  // encode board as two 64-bit numbers, 
+	pos.fromArray(iboard.array,rootPlayer); // one for each colour
+	int t=pos.canonicalTransform();
+	long black=OthPosition.transform(pos.black,t);
+	long white=OthPosition.transform(pos.white,t);
+
+	synchronized(savedPositions){
+	    if(!savedLoaded){readSavedPositions(); savedLoaded=true;}
+	    if(!savedPositions.add(Long.valueOf(OthPosition.hash(black,white,rootPlayer)))) return;
+
+	    // save to file database.dat as binary data
+
+	    FileOutputStream fs;
+	    DataOutputStream ds;
+	    try{
+		fs=new FileOutputStream("database.dat", true); // open in append mode
+		ds = new DataOutputStream(fs);
+
+		ds.writeLong(black);
+		ds.writeLong(white);       // board
+		ds.writeByte(rootPlayer);  // player to move
+		ds.writeByte(value>>8);       // true value of board *for that player*
+
+		ds.close();
 	    }
+	    catch(IOException ioe){System.out.println("IO error whilst writing to database.dat: "+ioe);}
 	}
+    }
 
-	// save to file database.dat as binary data
-
-	FileOutputStream fs;
-	DataOutputStream ds;
-	try{
-	    fs=new FileOutputStream("database.dat", true); // open in append mode
-	    ds = new DataOutputStream(fs);
+    // Keys of the positions already in database.dat, read on the first save (so
+    // that nothing which never saves, such as analysis, pays for reading it)
 
-	    ds.writeLong(black);
-	    ds.writeLong(white);       // board
-	    ds.writeByte(rootPlayer);  // player to move
-	    ds.writeByte(value>>8);       // true value of board *for that player*
+    static final Set<Long> savedPositions=new HashSet<Long>();
+    static boolean savedLoaded=false; // guarded by savedPositions
 
-	    ds.close();
+    static void readSavedPositions(){
+	try{
+	    DataInputStream ds=new DataInputStream(new BufferedInputStream(
+		new FileInputStream("database.dat")));
+	    try{
+		while(true){
+		    long black=ds.readLong();
+		    long white=ds.readLong();
+		    int player=ds.readByte();
+		    ds.readByte(); // value
+		    savedPositions.add(Long.valueOf(OthPosition.hash(black,white,player)));
+		}
+	    }
+	    catch(EOFException eof){} // that's all of them
+	    finally{
+		ds.close();
+	    }
 	}
-	catch(IOException ioe){System.out.println("IO error whilst writing to database.dat: "+ioe);}
-
-
+	catch(IOException ioe){} // no database yet
     }
 
 
@@ -0,0 +1,330 @@
+/*
+  File: OthPosition.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - lightweight board for headless tools
+                               (batch analysis), without any of the Swing baggage of
+                               OthPanel.
+
+  19 Oct 26                    Symmetries done with a few shifts and masks instead of
+                               square by square, and canonicalTransform() so that
+                               moves can be mapped to and from the canonical form. 0.2
+
+  19 Oct 26                    Now the rules for everything: OthPanel plays its games on
+                               one, and OthPlayerThread builds its line tables from
+                               flips(). 0.3
+*/
+
+/**
+  * A lightweight Othello position: two 64-bit masks (one per colour) and the
+  * player to move.  It knows the rules - legal moves, flips, passing and the end
+  * of the game - but nothing about drawing or searching, so thousands of them can
+  * be kept and replayed cheaply by headless tools.  This is the one place the
+  * rules are written down: OthPanel uses it for the game on screen, and the
+  * computer player's lookup tables are generated from flips().
+  *
+  * Squares are numbered bit=(y-1)*8+(x-1) using the same x (across), y (down)
+  * coordinates as the 10x10 board arrays used elsewhere.  Note that our start
+  * position is the standard one reflected top-to-bottom, so the usual game
+  * notation ("f5" etc) is converted with y=9-rank by parseSquare() and
+  * squareName().
+  *
+  * @(#)OthPosition.java 0.3 26/10/19
+  * @version 0.3 2026 October 19
+  * @see OthPlayerThread.java
+  */
+
+public class OthPosition{
+
+    static final int BLACK=1,WHITE=-1;
+
+    long black,white; // one bit per square for each colour
+    int whoseMove;    // BLACK, WHITE, or 0 once the game is over
+
+    static final long NOT_A=0xfefefefefefefefeL; // everything except the x=1 column
+    static final long NOT_H=0x7f7f7f7f7f7f7f7fL; // everything except the x=8 column
+
+    OthPosition(){
+	initPosition();
+    }
+
+    /** Copy constructor */
+    OthPosition(OthPosition p){
+	black=p.black; white=p.white; whoseMove=p.whoseMove;
+    }
+
+    /** Sets up the four starting pieces, Black to move */
+    public void initPosition(){
+	black=bit(4,4)|bit(5,5);
+	white=bit(5,4)|bit(4,5);
+	whoseMove=BLACK;
+    }
+
+    static long bit(int x,int y){return 1L<<((y-1)*8+(x-1));}
+
+    /* ---------------------------------------------------------------------- */
+    /*                         rules - moves and flips                        */
+    /* ---------------------------------------------------------------------- */
+
+    /** Returns a mask of the legal moves for a player with pieces own, against
+	pieces opp.  Each direction is done for all squares at once by shifting. */
+    static long legalMoves(long own,long opp){
+	long empty=~(own|opp);
+	long h=opp & 0x7e7e7e7e7e7e7e7eL; // opponent pieces that can be sandwiched sideways
+	long moves=0,t;
+
+	t=h&(own<<1); t|=h&(t<<1); t|=h&(t<<1); t|=h&(t<<1); t|=h&(t<<1); t|=h&(t<<1);
+	moves|=t<<1;
+	t=h&(own>>>1); t|=h&(t>>>1); t|=h&(t>>>1); t|=h&(t>>>1); t|=h&(t>>>1); t|=h&(t>>>1);
+	moves|=t>>>1;
+	t=opp&(own<<8); t|=opp&(t<<8); t|=opp&(t<<8); t|=opp&(t<<8); t|=opp&(t<<8); t|=opp&(t<<8);
+	moves|=t<<8;
+	t=opp&(own>>>8); t|=opp&(t>>>8); t|=opp&(t>>>8); t|=opp&(t>>>8); t|=opp&(t>>>8); t|=opp&(t>>>8);
+	moves|=t>>>8;
+	t=h&(own<<9); t|=h&(t<<9); t|=h&(t<<9); t|=h&(t<<9); t|=h&(t<<9); t|=h&(t<<9);
+	moves|=t<<9;
+	t=h&(own>>>9); t|=h&(t>>>9); t|=h&(t>>>9); t|=h&(t>>>9); t|=h&(t>>>9); t|=h&(t>>>9);
+	moves|=t>>>9;
+	t=h&(own<<7); t|=h&(t<<7); t|=h&(t<<7); t|=h&(t<<7); t|=h&(t<<7); t|=h&(t<<7);
+	moves|=t<<7;
+	t=h&(own>>>7); t|=h&(t>>>7); t|=h&(t>>>7); t|=h&(t>>>7); t|=h&(t>>>7); t|=h&(t>>>7);
+	moves|=t>>>7;
+
+	return moves & empty;
+    }
+
+    /** Returns a mask of the pieces flipped by a move at square sq (0-63) for the
+	player with pieces own.  Returns zero if the move is illegal. */
+    static long flips(long own,long opp,int sq){
+	long flipped=0;
+	flipped|=line(own,opp,sq, 1,NOT_A); // right
+	flipped|=line(own,opp,sq,-1,NOT_H); // left
+	flipped|=line(own,opp,sq, 8,-1L);   // down
+	flipped|=line(own,opp,sq,-8,-1L);   // up
+	flipped|=line(own,opp,sq, 9,NOT_A); // down right
+	flipped|=line(own,opp,sq,-7,NOT_A); // up right
+	flipped|=line(own,opp,sq, 7,NOT_H); // down left
+	flipped|=line(own,opp,sq,-9,NOT_H); // up left
+	return flipped;
+    }
+
+    // walk from sq in one direction, collecting opponent pieces until we reach one
+    // of our own (flip them) or anything else (flip nothing).  The mask removes
+    // squares which we could only reach by wrapping round the edge of the board.
+
+    private static long line(long own,long opp,int sq,int step,long mask){
+	long found=0;
+	long b=1L<<sq;
+	while(true){
+	    b=(step>0) ? (b<<step)&mask : (b>>>-step)&mask;
+	    if((b&opp)!=0) found|=b;
+	    else if((b&own)!=0) return found;
+	    else return 0;
+	}
+    }
+
+    /** Legal moves for the player to move (zero if the game is over) */
+    public long legalMoves(){
+	if(whoseMove==BLACK) return legalMoves(black,white);
+	if(whoseMove==WHITE) return legalMoves(white,black);
+	return 0;
+    }
+
+    /** Legal moves for the given player, regardless of whose turn it is */
+    public long legalMoves(int player){
+	return (player==BLACK) ? legalMoves(black,white) : legalMoves(white,black);
+    }
+
+    public boolean isLegal(int x,int y){
+	return (legalMoves() & bit(x,y))!=0;
+    }
+
+    /** Makes a move for the player to move, and decides who moves next; if the
+	opponent can't move then the same player goes again, and if neither can move
+	whoseMove is set to zero.  Returns false (and changes nothing) if the move is
+	illegal. */
+    public boolean makeMove(int x,int y){
+	if(whoseMove==0 || x<1 || x>8 || y<1 || y>8) return false;
+	int sq=(y-1)*8+(x-1);
+	long own=(whoseMove==BLACK) ? black : white;
+	long opp=(whoseMove==BLACK) ? white : black;
+	if(((own|opp)>>>sq & 1)!=0) return false; // square is already occupied
+	long f=flips(own,opp,sq);
+	if(f==0) return false;
+
+	own|=f|(1L<<sq); opp&=~f;
+	if(whoseMove==BLACK){black=own; white=opp;}
+	else {white=own; black=opp;}
+
+	whoseMove=-whoseMove; // change player
+	if(legalMoves()==0){
+	    whoseMove=-whoseMove; // opponent has to pass
+	    if(legalMoves()==0) whoseMove=0; // neither can move: end of game
+	}
+	return true;
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                   conversion to and from other forms                   */
+    /* ---------------------------------------------------------------------- */
+
+    /** Copies the position into a 10x10 board array, as used by OthPanel and
+	OthPlayerThread.setup() */
+    public void toArray(int[][] a){
+	for(int x=0;x<10;x++){
+	    for(int y=0;y<10;y++){
+		a[x][y]=0;
+	    }
+	}
+	for(int sq=0;sq<64;sq++){
+	    if((black>>>sq & 1)!=0) a[1+(sq&7)][1+(sq>>3)]=BLACK;
+	    else if((white>>>sq & 1)!=0) a[1+(sq&7)][1+(sq>>3)]=WHITE;
+	}
+    }
+
+    /** Sets the position from a 10x10 board array and the player to move */
+    public void fromArray(int[][] a,int player){
+	black=white=0;
+	for(int x=1;x<9;x++){
+	    for(int y=1;y<9;y++){
+		if(a[x][y]==BLACK) black|=bit(x,y);
+		else if(a[x][y]==WHITE) white|=bit(x,y);
+	    }
+	}
+	whoseMove=player;
+    }
+
+    public int countPieces(int player){
+	return Long.bitCount(player==BLACK ? black : white);
+    }
+
+    public int countEmpty(){
+	return 64-Long.bitCount(black|white);
+    }
+
+    /** Converts a square in normal game notation ("a1" to "h8") to 0-63, or -1 */
+    static int parseSquare(String s){
+	if(s.length()<2) return -1;
+	int x=Character.toLowerCase(s.charAt(0))-'a'+1;
+	int rank=s.charAt(1)-'0';
+	if(x<1 || x>8 || rank<1 || rank>8) return -1;
+	return (8-rank)*8+(x-1); // y=9-rank, see class comment
+    }
+
+    static String squareName(int sq){
+	return ""+(char)('a'+(sq&7))+(8-(sq>>3));
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                                 hashing                                */
+    /* ---------------------------------------------------------------------- */
+
+    /** A 64-bit hash of the position, including the player to move */
+    public long key(){
+	return hash(black,white,whoseMove);
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                               symmetries                               */
+    /* ---------------------------------------------------------------------- */
+
+    // A position has 8 equivalent forms (4 rotations, each of which may be
+    // reflected) which all have the same value and, after transforming the
+    // squares, the same best move.  Transformation t is made up of three
+    // steps, done in this order: bit 0 swaps x and y, bit 1 reflects x (left to
+    // right), bit 2 reflects y (top to bottom).
+    //
+    // The canonical form is whichever of the 8 has the smallest (black,white)
+    // masks, so anything stored or cached under canonicalKey() is shared by all
+    // 8 forms.  Finding it takes about a hundred shift/mask operations, cheap
+    // enough to do at every node near the root of a search.
+
+    /** A 64-bit hash which is the same for all 8 reflections/rotations of the
+	position, so equivalent positions can share one entry in a cache or file. */
+    public long canonicalKey(){
+	int t=canonicalTransform();
+	return hash(transform(black,t),transform(white,t),whoseMove);
+    }
+
+    /** Returns the transformation t which turns this position into its
+	canonical form.  A move sq in this position is transformSquare(sq,t) in
+	the canonical form, and a move c in the canonical form is
+	transformSquare(c,inverse(t)) here. */
+    public int canonicalTransform(){
+	long b0=black,w0=white;
+	long b1=flipDiagonal(black),w1=flipDiagonal(white); // the swapped forms
+	int best=0;
+	long bestB=b0,bestW=w0,b,w;
+
+	for(int t=1;t<8;t++){
+	    b=((t&1)!=0) ? b1 : b0;
+	    w=((t&1)!=0) ? w1 : w0;
+	    if((t&2)!=0){b=mirror(b); w=mirror(w);}
+	    if((t&4)!=0){b=Long.reverseBytes(b); w=Long.reverseBytes(w);}
+	    if(b<bestB || (b==bestB && w<bestW)){bestB=b; bestW=w; best=t;}
+	}
+	return best;
+    }
+
+    /** Applies transformation t to a mask of squares */
+    static long transform(long m,int t){
+	if((t&1)!=0) m=flipDiagonal(m);
+	if((t&2)!=0) m=mirror(m);
+	if((t&4)!=0) m=Long.reverseBytes(m); // rows are bytes, so this reflects y
+	return m;
+    }
+
+    /** Applies transformation t to a single square (0-63) */
+    static int transformSquare(int sq,int t){
+	int x=sq&7,y=sq>>3,tmp;
+	if((t&1)!=0){tmp=x; x=y; y=tmp;}
+	if((t&2)!=0) x=7-x;
+	if((t&4)!=0) y=7-y;
+	return y*8+x;
+    }
+
+    /** The transformation which undoes t.  Only the ones which swap x and y
+	need any thought: the reflections then have to swap over too. */
+    static int inverse(int t){
+	if((t&1)==0) return t;
+	return 1 | ((t&2)<<1) | ((t&4)>>1);
+    }
+
+    // reflect x (reverse the bits within each byte)
+    static long mirror(long m){
+	m=((m>>>1)&0x5555555555555555L) | ((m&0x5555555555555555L)<<1);
+	m=((m>>>2)&0x3333333333333333L) | ((m&0x3333333333333333L)<<2);
+	m=((m>>>4)&0x0f0f0f0f0f0f0f0fL) | ((m&0x0f0f0f0f0f0f0f0fL)<<4);
+	return m;
+    }
+
+    // swap x and y, by swapping 4x4, then 2x2, then 1x1 blocks across the diagonal
+    static long flipDiagonal(long m){
+	long t;
+	t=0x0f0f0f0f00000000L & (m^(m<<28)); m^=t^(t>>>28);
+	t=0x3333000033330000L & (m^(m<<14)); m^=t^(t>>>14);
+	t=0x5500550055005500L & (m^(m<<7));  m^=t^(t>>>7);
+	return m;
+    }
+
+    static long hash(long b,long w,int player){
+	long h=b*0x9e3779b97f4a7c15L ^ Long.rotateLeft(w*0xc2b2ae3d27d4eb4fL,31) ^ player;
+	h^=h>>>29; h*=0xbf58476d1ce4e5b9L; h^=h>>>32;
+	return h;
+    }
+
+    public String toString(){
+	StringBuffer sb=new StringBuffer();
+	for(int y=1;y<9;y++){
+	    for(int x=1;x<9;x++){
+		long b=bit(x,y);
+		if((black&b)!=0) sb.append('X');
+		else if((white&b)!=0) sb.append('O');
+		else sb.append('.');
+	    }
+	    sb.append('\n');
+	}
+	return sb.toString();
+    }
+
+} // end of class OthPosition
@@ -0,0 +1,342 @@
+/*
+  File: OthProbCut.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - Multi-ProbCut parameters for a selective
+                               midgame search, and the tool to calibrate them
+*/
+
+import java.io.*;
+import java.util.*;
+
+/**
+  * Parameters for Multi-ProbCut (Michael Buro's selective search, as used in
+  * Logistello), and the tool which works them out.
+  *
+  * The score of a deep search is strongly correlated with the score of a
+  * shallow search of the same position: deep = a*shallow + b, give or take a
+  * normally distributed error with standard deviation sigma.  So at a node to
+  * be searched to depth d, a quick search to depth shallowDepth[d] tells us
+  * roughly what the full search would find.  If that says the score is almost
+  * certainly (more than threshold standard deviations) above beta or below
+  * alpha, the node can be cut off without the full search.  a, b and sigma
+  * depend on the depths and on the stage of the game, so there is a set for
+  * each depth and for each ten empty squares.  (The "Multi" is that the cut is
+  * tried at many depths, including within the shallow searches themselves.)
+  *
+  * Parameters are read from probcut.dat, as written by the calibration tool,
+  * if there is one; otherwise the built-in ones below are used, which came from
+  * the tool's default run.  Depths deeper than were calibrated use the
+  * parameters for two plies less deep, which have the same gap between the
+  * shallow and the deep search.
+  *
+  * Usage: java OthProbCut [games [maxdepth [archive.wtb]]]
+  *   searches positions from that many games to every depth from 1 to maxdepth
+  *   (default 8), fits a, b and sigma, and writes probcut.dat.  The games are
+  *   from a WTHOR archive if one is given (see OthWthor), otherwise played by
+  *   the computer against itself from random openings.
+  *
+  * @(#)OthProbCut.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthPlayerThread.java
+  */
+
+public class OthProbCut{
+
+    static final int STAGES=6;     // empty squares 1-10, 11-20 ... 51-60
+    static final int MAX_DEPTH=20; // as deep as OthPlayerThread searches the midgame
+    static final String FILE="probcut.dat";
+
+    /** For a node to be searched to depth d, the depth of the shallow search
+	which predicts its score, or 0 for no cut at that depth */
+    static final int shallowDepth[]=new int[MAX_DEPTH+1];
+    static{
+	shallowDepth[3]=1; shallowDepth[4]=2;
+	for(int d=5;d<=MAX_DEPTH;d++) shallowDepth[d]=d-4;
+    }
+
+    double a[][]=new double[STAGES][MAX_DEPTH+1];
+    double b[][]=new double[STAGES][MAX_DEPTH+1];
+    double sigma[][]=new double[STAGES][MAX_DEPTH+1];
+    int count[][]=new int[STAGES][MAX_DEPTH+1]; // positions fitted, 0 if none
+    double threshold=1.5; // how many standard deviations make a cut safe enough
+
+    /** Parameters with nothing in them (so no cuts) */
+    public OthProbCut(){}
+
+    /** The parameters from probcut.dat, or the built-in ones */
+    public static OthProbCut getDefault(){
+	OthProbCut pc=new OthProbCut();
+	try{
+	    pc.read(new File(FILE));
+	}
+	catch(IOException ioe){ // no file (or a bad one)
+	    pc=new OthProbCut();
+	    for(int i=0;i<DEFAULTS.length;i++){
+		double p[]=DEFAULTS[i];
+		pc.set((int)p[0],(int)p[1],p[2],p[3],p[4],(int)p[5]);
+	    }
+	}
+	pc.extend();
+	return pc;
+    }
+
+    /** How sure a cut has to be, in standard deviations (1.5 to start with).
+	Bigger is safer and slower. */
+    public void setThreshold(double t){threshold=t;}
+
+    static int stage(int empties){
+	return Math.max(0,Math.min(STAGES-1,(empties-1)/10));
+    }
+
+    void set(int stage,int depth,double a,double b,double sigma,int count){
+	this.a[stage][depth]=a;
+	this.b[stage][depth]=b;
+	this.sigma[stage][depth]=sigma;
+	this.count[stage][depth]=count;
+    }
+
+    /** Are there parameters for this stage and depth? */
+    boolean has(int stage,int depth){
+	return depth<=MAX_DEPTH && count[stage][depth]>0 && a[stage][depth]>0;
+    }
+
+    // Fill in the depths beyond the calibrated ones from two plies less deep
+    void extend(){
+	for(int s=0;s<STAGES;s++){
+	    for(int d=5;d<=MAX_DEPTH;d++){
+		if(count[s][d]==0 && count[s][d-2]>0)
+		    set(s,d,a[s][d-2],b[s][d-2],sigma[s][d-2],count[s][d-2]);
+	    }
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                                 file                                   */
+    /* ---------------------------------------------------------------------- */
+
+    // probcut.dat: number of stages and of depths, then a, b, sigma (doubles) and
+    // the count (int) for each stage and depth, with DataOutputStream
+
+    void read(File f) throws IOException {
+	DataInputStream ds=new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+	try{
+	    int stages=ds.readInt(),depths=ds.readInt();
+	    if(stages!=STAGES || depths<1 || depths>MAX_DEPTH+1)
+		throw new IOException("Bad ProbCut parameter file: "+f);
+	    for(int s=0;s<stages;s++){
+		for(int d=0;d<depths;d++){
+		    set(s,d,ds.readDouble(),ds.readDouble(),ds.readDouble(),ds.readInt());
+		}
+	    }
+	}
+	finally{
+	    ds.close();
+	}
+    }
+
+    void write(File f,int depths) throws IOException {
+	DataOutputStream ds=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+	try{
+	    ds.writeInt(STAGES);
+	    ds.writeInt(depths);
+	    for(int s=0;s<STAGES;s++){
+		for(int d=0;d<depths;d++){
+		    ds.writeDouble(a[s][d]);
+		    ds.writeDouble(b[s][d]);
+		    ds.writeDouble(sigma[s][d]);
+		    ds.writeInt(count[s][d]);
+		}
+	    }
+	}
+	finally{
+	    ds.close();
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                              calibration                               */
+    /* ---------------------------------------------------------------------- */
+
+    static public void main(String s[]) throws Exception {
+	int games=(s.length>0) ? Integer.parseInt(s[0]) : 20;
+	int maxDepth=(s.length>1) ? Integer.parseInt(s[1]) : 8;
+	maxDepth=Math.max(3,Math.min(maxDepth,MAX_DEPTH));
+
+	Vector<OthPosition> positions;
+	if(s.length>2) positions=archivePositions(new OthWthor(new File(s[2])),games);
+	else positions=selfPlayPositions(games,1);
+	System.out.println(positions.size()+" positions, searching to depth "+maxDepth);
+
+	OthProbCut pc=calibrate(positions,maxDepth);
+	pc.write(new File(FILE),maxDepth+1);
+
+	// print them, in the form of DEFAULTS
+	System.out.println("    // stage, depth, a, b, sigma, positions");
+	for(int st=0;st<STAGES;st++){
+	    for(int d=3;d<=maxDepth;d++){
+		if(pc.count[st][d]==0) continue;
+		System.out.println("\t{"+st+","+d+","+round(pc.a[st][d])+","+round(pc.b[st][d])+","+
+				   round(pc.sigma[st][d])+","+pc.count[st][d]+"},");
+	    }
+	}
+	System.out.println("Written to "+FILE);
+    }
+
+    static double round(double x){return Math.round(x*1000)/1000.0;}
+
+    /** Searches every position to each depth up to maxDepth, and fits a, b and
+	sigma for each depth and stage by least squares.  Positions where the
+	game ends within the search (scores of 256 or more, from end_assess())
+	aren't used, as they don't follow the same line. */
+    static OthProbCut calibrate(Vector<OthPosition> positions,int maxDepth){
+	// sums for the fits: n, x, y, xx, xy, yy
+	double sums[][][]=new double[STAGES][maxDepth+1][6];
+	int done=0;
+	for(Enumeration<OthPosition> e=positions.elements();e.hasMoreElements();){
+	    OthPosition pos=e.nextElement();
+	    int score[]=new int[maxDepth+1];
+	    for(int d=1;d<=maxDepth;d++){
+		int board[][]=new int[10][10];
+		pos.toArray(board);
+		OthPlayerThread opt=new OthPlayerThread();
+		opt.setAnalysing(true);
+		opt.setup(board,pos.whoseMove,d,false);
+		if(d>1) opt.setAspiration(score[d-1]); // first guess for MTD(f)
+		opt.setMTDf(true);
+		score[d]=opt.search()[3];
+	    }
+	    int st=stage(pos.countEmpty());
+	    for(int d=3;d<=maxDepth;d++){
+		double x=score[shallowDepth[d]],y=score[d];
+		if(Math.abs(x)>=256 || Math.abs(y)>=256) continue;
+		double sum[]=sums[st][d];
+		sum[0]++; sum[1]+=x; sum[2]+=y; sum[3]+=x*x; sum[4]+=x*y; sum[5]+=y*y;
+	    }
+	    if(++done%50==0) System.out.println("  "+done+" positions searched");
+	}
+
+	OthProbCut pc=new OthProbCut();
+	for(int st=0;st<STAGES;st++){
+	    for(int d=3;d<=maxDepth;d++){
+		double sum[]=sums[st][d];
+		double n=sum[0];
+		if(n<10) continue; // too few to go on
+		double det=n*sum[3]-sum[1]*sum[1];
+		if(det<=0) continue;
+		double a=(n*sum[4]-sum[1]*sum[2])/det;
+		double b=(sum[2]-a*sum[1])/n;
+		double sse=sum[5]-a*sum[4]-b*sum[2]; // sum of squared errors
+		pc.set(st,d,a,b,Math.sqrt(Math.max(sse,0)/(n-2)),(int)n);
+	    }
+	}
+	return pc;
+    }
+
+    /** Positions from games the computer plays against itself at depth 2, from
+	openings of 6 to 10 random moves, every third position after the opening
+	until there are 8 empty squares. */
+    static Vector<OthPosition> selfPlayPositions(int games,long seed){
+	Random r=new Random(seed);
+	Vector<OthPosition> list=new Vector<OthPosition>();
+	for(int g=0;g<games;g++){
+	    OthPosition pos=new OthPosition();
+	    int opening=6+r.nextInt(5);
+	    for(int ply=0;pos.whoseMove!=0 && pos.countEmpty()>8;ply++){
+		if(ply>=opening && ply%3==0) list.addElement(new OthPosition(pos));
+		int sq;
+		if(ply<opening){
+		    long moves=pos.legalMoves();
+		    int pick=r.nextInt(Long.bitCount(moves));
+		    for(int j=0;j<pick;j++) moves&=moves-1;
+		    sq=Long.numberOfTrailingZeros(moves);
+		}
+		else{
+		    int board[][]=new int[10][10];
+		    pos.toArray(board);
+		    OthPlayerThread opt=new OthPlayerThread();
+		    opt.setAnalysing(true);
+		    opt.setup(board,pos.whoseMove,2,false);
+		    int move[]=opt.search();
+		    sq=(move[1]-1)*8+(move[0]-1);
+		}
+		pos.makeMove(1+(sq&7),1+(sq>>3));
+	    }
+	}
+	return list;
+    }
+
+    /** Positions from the first few games of an archive, every third position
+	from move 10 until there are 8 empty squares */
+    static Vector<OthPosition> archivePositions(OthWthor w,int games){
+	Vector<OthPosition> list=new Vector<OthPosition>();
+	for(int g=0;g<games && g<w.getGameCount();g++){
+	    OthPosition pos=new OthPosition();
+	    for(int ply=0;ply<52 && pos.whoseMove!=0;ply++){
+		if(ply>=10 && ply%3==0) list.addElement(new OthPosition(pos));
+		int sq=w.getMove(g,ply);
+		if(sq<0 || !pos.makeMove(1+(sq&7),1+(sq>>3))) break;
+	    }
+	}
+	return list;
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                          built-in parameters                           */
+    /* ---------------------------------------------------------------------- */
+
+    // From "java OthProbCut 100 10" (1506 positions from 100 games of self-play)
+
+    static final double DEFAULTS[][]={
+	// stage, depth, a, b, sigma, positions
+	{0,3,1.048,4.171,22.849,100},
+	{0,4,1.05,3.93,24.365,100},
+	{0,5,1.118,7.145,37.327,100},
+	{0,6,1.121,9.055,36.916,100},
+	{0,7,1.132,8.372,35.042,100},
+	{0,8,1.111,11.241,32.886,100},
+	{0,9,1.076,6.443,27.535,99},
+	{0,10,1.038,6.802,29.284,98},
+	{1,3,1.074,2.403,21.593,300},
+	{1,4,1.074,2.204,20.844,300},
+	{1,5,1.141,3.709,33.82,300},
+	{1,6,1.153,3.182,29.536,300},
+	{1,7,1.153,2.109,28.587,300},
+	{1,8,1.147,1.212,27.258,300},
+	{1,9,1.14,1.051,26.549,300},
+	{1,10,1.148,-0.033,25.755,300},
+	{2,3,1.102,3.026,13.918,400},
+	{2,4,1.1,2.298,14.399,400},
+	{2,5,1.197,4.834,22.142,400},
+	{2,6,1.196,4.311,21.967,400},
+	{2,7,1.193,2.204,18.68,400},
+	{2,8,1.191,2.93,18.125,400},
+	{2,9,1.174,1.361,15.546,400},
+	{2,10,1.179,1.602,15.122,400},
+	{3,3,1.051,2.005,8.108,300},
+	{3,4,1.064,1.223,8.375,300},
+	{3,5,1.129,2.377,11.186,300},
+	{3,6,1.133,1.869,11.102,300},
+	{3,7,1.199,0.847,9.419,300},
+	{3,8,1.171,1.901,7.634,300},
+	{3,9,1.18,0.92,7.952,300},
+	{3,10,1.175,1.639,7.806,300},
+	{4,3,1.107,1.614,5.14,300},
+	{4,4,1.103,1.05,5.433,300},
+	{4,5,1.195,1.877,7.658,300},
+	{4,6,1.178,1.493,7.597,300},
+	{4,7,1.18,-0.24,6.352,300},
+	{4,8,1.159,0.66,5.165,300},
+	{4,9,1.147,-0.742,5.007,300},
+	{4,10,1.146,0.496,5.012,300},
+	{5,3,1.026,1.551,5.256,106},
+	{5,4,1.052,0.829,4.395,106},
+	{5,5,1.041,1.7,6.429,106},
+	{5,6,1.063,0.701,5.448,106},
+	{5,7,1.1,-0.336,4.922,106},
+	{5,8,1.108,0.004,4.003,106},
+	{5,9,1.123,-0.782,4.062,106},
+	{5,10,1.149,0.708,3.827,106}
+    };
+
+} // end of class OthProbCut
@@ -0,0 +1,63 @@
+/*
+  File: OthSearchContext.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - the computer player's working storage, kept
+                               from one search to the next
+*/
+
+/**
+  * The working storage for one search by the computer player: the board (with
+  * its line indices), an undo record for each level of the tree, and the list
+  * of moves at the root.  Making all these afresh for every search is a lot of
+  * garbage when thousands of searches a second are run for analysis, so a
+  * context is made once and used again and again.
+  *
+  * Each thread has its own context (current()), which OthPlayerThread uses
+  * unless it is given another with setContext().  Only one search at a time
+  * may use a context.  Nothing has to be cleared between searches: the board
+  * is copied in at the start of each one, and the undo records and the move
+  * list are always written before they are read.  There are enough undo
+  * records to solve the endgame to start with, and more are made (once) if a
+  * search goes deeper.
+  *
+  * @(#)OthSearchContext.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthPlayerThread.java
+  */
+
+public class OthSearchContext{
+
+    static final int MAX_MOVES=64; // more than the legal moves in any position
+
+    final OthPlayerThread.Board board=new OthPlayerThread.Board();
+    final int moveCoords[][]=new int[MAX_MOVES][3]; // (x,y,score) for each root move
+    private OthPlayerThread.undoData undo[]=new OthPlayerThread.undoData[0];
+
+    private static final ThreadLocal<OthSearchContext> contexts=new ThreadLocal<OthSearchContext>(){
+	    protected OthSearchContext initialValue(){
+		return new OthSearchContext();
+	    }};
+
+    public OthSearchContext(){
+	undo(61); // depth 60 for solving, plus the root
+    }
+
+    /** This thread's context */
+    public static OthSearchContext current(){
+	return contexts.get();
+    }
+
+    /** The undo records, one for each level of a search with the given number
+	of levels */
+    OthPlayerThread.undoData[] undo(int levels){
+	if(undo.length<levels){
+	    OthPlayerThread.undoData more[]=new OthPlayerThread.undoData[levels];
+	    System.arraycopy(undo,0,more,0,undo.length);
+	    for(int i=undo.length;i<levels;i++) more[i]=new OthPlayerThread.undoData();
+	    undo=more;
+	}
+	return undo;
+    }
+
+} // end of class OthSearchContext
@@ -0,0 +1,334 @@
+/*
+  File: OthServer.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - the computer player over HTTP, for a web
+                               front end on the same machine
+
+  19 Oct 26                    clock and inc parameters, for timed games
+
+  19 Oct 26                    Errors after a stream has started are sent as an error
+                               event; malformed requests get a 400
+
+  19 Oct 26                    quote() escapes control characters, so an error message
+                               with a newline in it can't break the JSON or the stream
+*/
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import com.sun.net.httpserver.*;
+
+/**
+  * A small HTTP server which gives the computer player's move for a position,
+  * using nothing but the JDK.  It only listens on the loopback address, so it
+  * is for a front end running on the same machine (and for testing).
+  *
+  * Requests (GET with a query string, or POST with a form-encoded body):
+  *
+  *   /move?board=...&player=X&depth=6&ms=2000&solve=1
+  *   /move?board=...&player=X&clock=60000&inc=0&solve=1
+  *     Returns the move as JSON: {"move":"f5","score":12,"depth":6}, with
+  *     "move":null if the player has no move.
+  *
+  *   /stream?(same parameters)
+  *     The same, but as a stream of server-sent events (text/event-stream):
+  *     a "progress" event after each depth of the search, then a "move" event
+  *     with the answer, or an "error" event if the search failed or was
+  *     cancelled.
+  *
+  *   Errors before any answer are JSON, {"error":"..."}, with status 400 for a
+  *   bad request, 503 if the server is busy or shutting down, and 500 if the
+  *   search failed.
+  *
+  * board is 64 characters, a1 to h1 then a2 to h2 and so on, with X for black,
+  * O for white and - (or .) for empty; player is X or O.  Only board is needed:
+  * the rest default to black to move, depth 6, 2 seconds, endgame solving on.
+  * In a timed game, clock is the player's time left in ms and inc the
+  * increment per move (default 0); the time for the move is then worked out
+  * from the clock (see OthClock), and depth and ms are ignored.
+  * Scores are from the point of view of the player to move, in the computer
+  * player's units (when solved, the disc difference times 256).
+  *
+  * Connections are handled on virtual threads when the JDK has them (Java 21
+  * and later), otherwise on an ordinary thread pool, and only wait for results;
+  * the searches themselves are run by an OthSessionManager with a fixed number
+  * of threads, so idle or slow connections cost almost nothing.  (The JDK has
+  * no WebSocket server, which is why progress is sent as server-sent events.)
+  *
+  * Usage: java OthServer [port [threads]]
+  *
+  * @(#)OthServer.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthSessionManager.java
+  */
+
+public class OthServer{
+
+    static final int BLACK=1,WHITE=-1;
+
+    OthSessionManager manager;
+    HttpServer server;
+    ExecutorService connections;
+    String threadKind;
+
+    /* ---------------------------------------------------------------------- */
+    /*                                  MAIN                                  */
+    /* ---------------------------------------------------------------------- */
+
+    static public void main(String s[]) throws Exception {
+	int port=(s.length>0) ? Integer.parseInt(s[0]) : 8787;
+	int threads=(s.length>1) ? Integer.parseInt(s[1]) : Runtime.getRuntime().availableProcessors();
+	OthServer os=new OthServer(port,threads);
+	os.start();
+	System.out.println("Othello server on http://localhost:"+os.getPort()+"/ with "+threads+
+			   " search threads, connections on "+os.threadKind+" threads");
+    }
+
+    /** A server on the given port (0 to pick a free one) */
+    public OthServer(int port,int threads) throws IOException {
+	manager=new OthSessionManager(threads,threads*64);
+	server=HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(),port),0);
+	server.createContext("/move",new HttpHandler(){
+		public void handle(HttpExchange ex) throws IOException {
+		    move(ex,false);
+		}});
+	server.createContext("/stream",new HttpHandler(){
+		public void handle(HttpExchange ex) throws IOException {
+		    move(ex,true);
+		}});
+	connections=connectionExecutor();
+	server.setExecutor(connections);
+    }
+
+    public void start(){server.start();}
+
+    public void stop(){
+	server.stop(0);
+	manager.shutdown();
+	connections.shutdownNow();
+    }
+
+    public int getPort(){return server.getAddress().getPort();}
+
+    // Virtual threads if this JDK has them.  Found by reflection so that this
+    // still compiles and runs on older JDKs.
+
+    ExecutorService connectionExecutor(){
+	try{
+	    Method m=Executors.class.getMethod("newVirtualThreadPerTaskExecutor",new Class<?>[0]);
+	    threadKind="virtual";
+	    return (ExecutorService)m.invoke(null,new Object[0]);
+	}
+	catch(Exception e){
+	    threadKind="platform";
+	    return Executors.newCachedThreadPool();
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                            handling requests                           */
+    /* ---------------------------------------------------------------------- */
+
+    void move(HttpExchange ex,boolean streaming) throws IOException {
+	try{
+	    Map<String,String> params;
+	    try{
+		params=parameters(ex);
+	    }
+	    catch(IllegalArgumentException e){ // from URLDecoder: a bad % escape
+		send(ex,400,"{\"error\":"+quote("malformed request: "+e.getMessage())+"}");
+		return;
+	    }
+	    OthSessionManager.Session session=manager.newSession();
+	    try{
+		String error=setup(session,params);
+		if(error!=null){
+		    send(ex,400,"{\"error\":"+quote(error)+"}");
+		    return;
+		}
+		if(streaming) stream(ex,session);
+		else{
+		    int move[]=manager.requestMove(session).get();
+		    send(ex,200,result(move));
+		}
+	    }
+	    finally{
+		manager.closeSession(session);
+	    }
+	}
+	catch(RejectedExecutionException e){
+	    send(ex,503,"{\"error\":\"server busy\"}");
+	}
+	catch(CancellationException e){
+	    send(ex,503,"{\"error\":\"cancelled\"}");
+	}
+	catch(InterruptedException e){
+	    send(ex,503,"{\"error\":\"interrupted\"}");
+	}
+	catch(ExecutionException e){
+	    send(ex,500,"{\"error\":"+quote(""+e.getCause())+"}");
+	}
+	finally{
+	    ex.close();
+	}
+    }
+
+    // Send progress events as the search goes deeper, then the move.  The
+    // search thread only puts progress in a queue; this (connection) thread does
+    // the writing, so a slow client can't hold up a search thread.  Once the
+    // headers have gone there is no changing the status, so anything which
+    // goes wrong after that is sent as an error event.
+
+    void stream(HttpExchange ex,OthSessionManager.Session session) throws IOException {
+	final BlockingQueue<int[]> progress=new LinkedBlockingQueue<int[]>();
+	session.addObserver(new Observer(){
+		public void update(Observable o,Object arg){
+		    progress.add((int[])arg);
+		}});
+	Future<int[]> f=manager.requestMove(session);
+
+	ex.getResponseHeaders().set("Content-Type","text/event-stream");
+	ex.getResponseHeaders().set("Cache-Control","no-cache");
+	ex.sendResponseHeaders(200,0); // chunked
+	Writer out=new OutputStreamWriter(ex.getResponseBody(),"UTF-8");
+	try{
+	    try{
+		while(!f.isDone() || !progress.isEmpty()){
+		    int p[]=progress.poll(50,TimeUnit.MILLISECONDS);
+		    if(p!=null) event(out,"progress",result(p));
+		}
+		event(out,"move",result(f.get()));
+	    }
+	    catch(ExecutionException e){
+		event(out,"error","{\"error\":"+quote(""+e.getCause())+"}");
+	    }
+	    catch(CancellationException e){
+		event(out,"error","{\"error\":\"cancelled\"}");
+	    }
+	    catch(InterruptedException e){
+		f.cancel(true);
+		event(out,"error","{\"error\":\"interrupted\"}");
+	    }
+	}
+	catch(IOException e){
+	    f.cancel(true); // client has gone away
+	}
+	out.close();
+    }
+
+    void event(Writer out,String name,String data) throws IOException {
+	out.write("event: "+name+"\ndata: "+data+"\n\n");
+	out.flush();
+    }
+
+    // Sets up the session from the request's parameters.  Returns an error
+    // message, or null if all is well.
+
+    String setup(OthSessionManager.Session session,Map<String,String> params){
+	String board=params.get("board");
+	if(board==null || board.length()!=64) return "board must be 64 characters";
+	long black=0,white=0;
+	for(int i=0;i<64;i++){
+	    int sq=(7-i/8)*8+(i%8); // a1 first, see OthPosition.parseSquare()
+	    switch(Character.toUpperCase(board.charAt(i))){
+	    case 'X': black|=1L<<sq; break;
+	    case 'O': white|=1L<<sq; break;
+	    case '-': case '.': break;
+	    default: return "board may only contain X, O, - and .";
+	    }
+	}
+	String player=params.get("player");
+	int whoseMove=BLACK;
+	if(player!=null && player.equalsIgnoreCase("O")) whoseMove=WHITE;
+	else if(player!=null && !player.equalsIgnoreCase("X")) return "player must be X or O";
+
+	try{
+	    if(params.get("depth")!=null) session.setDepth(Integer.parseInt(params.get("depth")));
+	    if(params.get("ms")!=null) session.setTimeLimit(Long.parseLong(params.get("ms")));
+	    if(params.get("clock")!=null){
+		String inc=params.get("inc");
+		session.setClock(Long.parseLong(params.get("clock")),
+				 (inc==null) ? 0 : Long.parseLong(inc));
+	    }
+	}
+	catch(NumberFormatException e){
+	    return "depth, ms, clock and inc must be numbers";
+	}
+	session.setSolving(!"0".equals(params.get("solve")));
+
+	OthPosition pos=session.getPosition();
+	pos.black=black; pos.white=white; pos.whoseMove=whoseMove;
+	if(pos.legalMoves()==0) pos.whoseMove=0; // no move to make
+	return null;
+    }
+
+    // {"move":"f5","score":12,"depth":6}
+    String result(int move[]){
+	if(move==null) return "{\"move\":null}";
+	int sq=(move[1]-1)*8+(move[0]-1);
+	return "{\"move\":\""+OthPosition.squareName(sq)+"\",\"score\":"+move[3]+
+	    ",\"depth\":"+move[4]+"}";
+    }
+
+    // (only if nothing has been sent yet)
+    void send(HttpExchange ex,int code,String body) throws IOException {
+	if(ex.getResponseCode()!=-1) return;
+	byte bytes[]=body.getBytes("UTF-8");
+	ex.getResponseHeaders().set("Content-Type","application/json");
+	ex.sendResponseHeaders(code,bytes.length);
+	OutputStream out=ex.getResponseBody();
+	out.write(bytes);
+	out.close();
+    }
+
+    // A JSON string.  Control characters (a newline in an exception's message,
+    // say) are escaped too, so that an event's data stays on one line.
+
+    static String quote(String s){
+	StringBuffer sb=new StringBuffer("\"");
+	for(int i=0;i<s.length();i++){
+	    char c=s.charAt(i);
+	    switch(c){
+	    case '\\': sb.append("\\\\"); break;
+	    case '"': sb.append("\\\""); break;
+	    case '\n': sb.append("\\n"); break;
+	    case '\r': sb.append("\\r"); break;
+	    case '\t': sb.append("\\t"); break;
+	    default:
+		if(c<0x20) sb.append("\\u00").append(Character.forDigit(c>>4,16)).append(Character.forDigit(c&15,16));
+		else sb.append(c);
+	    }
+	}
+	return sb.append('"').toString();
+    }
+
+    // The query string, and for a POST the form-encoded body too
+    Map<String,String> parameters(HttpExchange ex) throws IOException {
+	Map<String,String> params=new HashMap<String,String>();
+	parse(ex.getRequestURI().getRawQuery(),params);
+	if(ex.getRequestMethod().equalsIgnoreCase("POST")){
+	    BufferedReader in=new BufferedReader(new InputStreamReader(ex.getRequestBody(),"UTF-8"));
+	    StringBuffer sb=new StringBuffer();
+	    String line;
+	    while((line=in.readLine())!=null) sb.append(line);
+	    parse(sb.toString(),params);
+	}
+	return params;
+    }
+
+    static void parse(String query,Map<String,String> params) throws UnsupportedEncodingException {
+	if(query==null) return;
+	StringTokenizer st=new StringTokenizer(query,"&");
+	while(st.hasMoreTokens()){
+	    String pair=st.nextToken();
+	    int eq=pair.indexOf('=');
+	    if(eq<0) params.put(URLDecoder.decode(pair,"UTF-8"),"");
+	    else params.put(URLDecoder.decode(pair.substring(0,eq),"UTF-8"),
+			    URLDecoder.decode(pair.substring(eq+1),"UTF-8"));
+	}
+    }
+
+} // end of class OthServer
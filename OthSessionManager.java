@@ -0,0 +1,351 @@
+/*
+  File: OthSessionManager.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - many games at once, sharing one pool of
+                               computer players
+
+  19 Oct 26                    Each depth is searched with an aspiration window around the
+                               score from the one before
+
+  19 Oct 26                    Each session keeps an OthGameMemory, shared by every depth
+                               of each search and by the searches for later moves
+
+  19 Oct 26                    Clock mode (setClock()): the time for each move is a share
+                               of the time left in the game
+
+  19 Oct 26                    Searches are stopped by a deadline the computer player
+                               checks itself, rather than by a timer thread, and stop
+                               within a millisecond or so
+
+  19 Oct 26                    Depths up to 60, as the computer player now allows
+
+  19 Oct 26                    A depth stopped by the deadline is used if the moves it
+                               finished include a better one than the depth before found
+
+  19 Oct 26                    The clock is only charged for a search which found a move
+                               and wasn't cancelled
+
+  19 Oct 26                    The sessions share one pair of transposition tables
+                               (OthSharedHashTable), rather than having 1MB of their own
+*/
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+  * Holds any number of independent games (sessions), for a server rather than
+  * the Swing front end.  A session is just an OthPosition and a few settings, a
+  * few hundred bytes, so one JVM can hold many thousands of them.
+  *
+  * When a session asks for the computer's move the search goes to a pool of
+  * worker threads shared by all the sessions.  Each session can only have one
+  * request queued or running at a time, and requests are taken in the order
+  * they arrive, so a busy session can't crowd out the others.  The queue is
+  * bounded, and requests are refused (RejectedExecutionException) when it is
+  * full rather than letting the backlog grow without limit.
+  *
+  * Each session has its own time limit.  The search deepens one ply at a time
+  * (up to the session's depth), and when time runs out the search in progress is
+  * stopped and the best move from the last complete depth is used, unless the
+  * unfinished depth had already found a better one.  (The first depth is
+  * always finished, so that there is a move.)  The computer player checks the
+  * deadline every few hundred nodes, so it stops within a millisecond;
+  * cancelling a request interrupts its thread, which stops it in the same way.
+  * Sessions are Observable: after each depth is finished (or a better move is
+  * found in an unfinished one), observers are sent the move so far as {x, y,
+  * player, score, depth}, where depth is 60 for a solved endgame and is the
+  * last finished depth for a move from an unfinished one.
+  *
+  * Alternatively a session can play to a clock (setClock()), with the time
+  * left in the game and an increment per move.  Each move is then given a soft
+  * and a hard limit by OthClock, and the depth limit is ignored.  A depth is
+  * only started if at least half the soft limit is left, as it would probably
+  * not finish in time; if the best move changes late in the search the soft
+  * limit is doubled, once (up to the hard limit), to find out which is right.
+  * The search is stopped at the hard limit.  The endgame is solved when the
+  * clock says there is time to, which may be before the usual 16 empty
+  * squares, or after when time is short.  The time used, counted from the
+  * request, is taken off the clock when a move is found; a cancelled request
+  * takes nothing off.
+  *
+  * Each session has an OthGameMemory, made on its first computer move, so each
+  * depth of a search starts with what the depth before found, and each move
+  * with what the last move's search found.  The memories only hold each game's
+  * history table and principal variation, about 2KB; the transposition tables
+  * are the manager's, shared by all the sessions and used by all the search
+  * threads at once (OthSharedHashTable).  A position reached in several games
+  * is then only searched once, and the memory a session costs stays small
+  * however many there are.
+  *
+  * @(#)OthSessionManager.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthPosition.java
+  * @see OthPlayerThread.java
+  */
+
+public class OthSessionManager{
+
+    static final int BLACK=1,WHITE=-1;
+    static final int HASH_BITS=20; // the shared tables, 16MB each
+
+    private ThreadPoolExecutor pool;
+    private OthHashTable midgame=new OthSharedHashTable(HASH_BITS);
+    private OthHashTable endgame=new OthSharedHashTable(HASH_BITS);
+    private Map<Long,Session> sessions=new ConcurrentHashMap<Long,Session>(); // by id
+    private AtomicLong nextId=new AtomicLong(1);
+
+    /** A manager with the given number of search threads, and room for queued
+	requests from up to maxQueued sessions */
+    public OthSessionManager(int threads,int maxQueued){
+	pool=new ThreadPoolExecutor(threads,threads,0,TimeUnit.MILLISECONDS,
+				    new ArrayBlockingQueue<Runnable>(maxQueued),daemonThreads("OthSearch"));
+    }
+
+    /** A manager with one search thread per processor */
+    public OthSessionManager(){
+	this(Runtime.getRuntime().availableProcessors(),4096);
+    }
+
+    private static ThreadFactory daemonThreads(final String name){
+	return new ThreadFactory(){
+		int n=0;
+		public synchronized Thread newThread(Runnable r){
+		    Thread t=new Thread(r,name+"-"+(n++));
+		    t.setDaemon(true);
+		    return t;
+		}};
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                               sessions                                 */
+    /* ---------------------------------------------------------------------- */
+
+    /** One game.  The settings may be changed between requests. */
+    public class Session extends Observable{
+	final long id;
+	final OthPosition position=new OthPosition();
+	int depth=6;               // deepest search
+	boolean solving=true;      // solve the endgame?
+	long timeLimit=5000;       // ms per computer move
+	OthClock clock;            // or a share of this, if not null
+	OthGameMemory memory;      // made on the first computer move, with the shared tables
+	volatile long lastUsed=System.currentTimeMillis();
+	private Future<int[]> pending; // the request in progress, if any
+
+	Session(long id){this.id=id;}
+
+	public long getId(){return id;}
+	public OthPosition getPosition(){return position;}
+	public void setDepth(int d){depth=Math.max(1,Math.min(d,60));}
+	public void setSolving(boolean b){solving=b;}
+	public void setTimeLimit(long ms){timeLimit=ms;}
+
+	/** Plays to a clock, with remaining ms left for the rest of the game and
+	    increment ms added after each move, rather than a fixed time per move.
+	    The time each move takes is taken off; call again to correct it from
+	    the game's own clock. */
+	public synchronized void setClock(long remaining,long increment){
+	    if(clock==null) clock=new OthClock(remaining,increment);
+	    else clock.set(remaining,increment);
+	}
+
+	/** Goes back to a fixed time per move */
+	public synchronized void clearClock(){clock=null;}
+
+	/** The clock, or null if there isn't one */
+	public OthClock getClock(){return clock;}
+
+	/** Is a computer move being worked out? */
+	public synchronized boolean isBusy(){return pending!=null && !pending.isDone();}
+
+	/** Plays a move (for a human player).  Returns false if it is illegal, or
+	    if the computer is thinking. */
+	public synchronized boolean makeMove(int x,int y){
+	    lastUsed=System.currentTimeMillis();
+	    if(isBusy()) return false;
+	    return position.makeMove(x,y);
+	}
+
+	/** Starts a new game */
+	public synchronized void newGame(){
+	    if(pending!=null) pending.cancel(true);
+	    position.initPosition();
+	    memory=null; // a search still stopping keeps the old one
+	}
+
+	// notify observers from the search thread
+	void progress(int move[]){
+	    setChanged();
+	    notifyObservers(move);
+	}
+    }
+
+    /** Makes a new session, at the start of a game */
+    public Session newSession(){
+	Session s=new Session(nextId.getAndIncrement());
+	sessions.put(Long.valueOf(s.id),s);
+	return s;
+    }
+
+    /** The session with the given id, or null */
+    public Session getSession(long id){
+	return sessions.get(Long.valueOf(id));
+    }
+
+    public void closeSession(Session s){
+	synchronized(s){
+	    if(s.pending!=null) s.pending.cancel(true);
+	}
+	sessions.remove(Long.valueOf(s.id));
+    }
+
+    public int sessionCount(){return sessions.size();}
+
+    /** Closes sessions which haven't been used for maxIdle ms.  Returns how many. */
+    public int closeIdle(long maxIdle){
+	long cutoff=System.currentTimeMillis()-maxIdle;
+	int n=0;
+	for(Iterator<Session> i=sessions.values().iterator();i.hasNext();){
+	    Session s=i.next();
+	    if(s.lastUsed<cutoff && !s.isBusy()){closeSession(s); n++;}
+	}
+	return n;
+    }
+
+    /** Stops taking requests, and stops the searches in progress */
+    public void shutdown(){
+	pool.shutdownNow();
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                           computer moves                               */
+    /* ---------------------------------------------------------------------- */
+
+    /** Asks for the computer's move in session s.  The Future gives {x, y,
+	player, score, depth}, or null if there was no move to make; the move is
+	not played.  Throws IllegalStateException if s already has a request in
+	progress, and RejectedExecutionException if the queue is full. */
+    public Future<int[]> requestMove(Session s){
+	synchronized(s){
+	    if(s.isBusy()) throw new IllegalStateException("Session "+s.id+" is already searching");
+	    s.lastUsed=System.currentTimeMillis();
+	    if(s.memory==null) s.memory=new OthGameMemory(midgame,endgame);
+	    FutureTask<int[]> f=new FutureTask<int[]>(new Search(s,new OthPosition(s.position),s.memory,s.clock));
+	    pool.execute(f); // may throw RejectedExecutionException
+	    s.pending=f;
+	    return f;
+	}
+    }
+
+    /** Requests the computer's move and plays it.  Waits for the result. */
+    public int[] playComputerMove(Session s) throws InterruptedException, ExecutionException {
+	int move[]=requestMove(s).get();
+	if(move!=null){
+	    synchronized(s){
+		s.position.makeMove(move[0],move[1]);
+	    }
+	}
+	return move;
+    }
+
+    // One computer move for one session, deepening until the depth limit or time
+    // runs out.  In the endgame a short midgame search is done first, so there is
+    // a move to fall back on if the solve runs out of time.  With a clock, times
+    // are counted from the request, as the game's clock would be.
+
+    class Search implements Callable<int[]>{
+	Session s;
+	OthPosition pos; // copy, in case the session's game changes meanwhile
+	OthGameMemory memory;
+	OthClock clock;
+	long requested=System.currentTimeMillis();
+	int best[]=null;
+
+	Search(Session s,OthPosition pos,OthGameMemory memory,OthClock clock){
+	    this.s=s; this.pos=pos; this.memory=memory; this.clock=clock;
+	}
+
+	public int[] call(){
+	    if(pos.whoseMove==0) return null; // game over
+	    int board[][]=new int[10][10];
+	    pos.toArray(board);
+	    int empties=pos.countEmpty();
+
+	    long soft=s.timeLimit,hard=s.timeLimit;
+	    int maxDepth=s.depth;
+	    if(clock!=null){
+		soft=clock.softLimit(empties);
+		hard=clock.hardLimit(empties);
+		maxDepth=20;
+	    }
+	    long waited=System.currentTimeMillis()-requested;
+	    long deadline=System.nanoTime()+(hard-waited)*1000000L;
+
+	    try{
+		OthPlayerThread opt=new OthPlayerThread();
+		boolean solve=s.solving && empties<opt.solveDepth;
+		if(clock!=null) solve=s.solving && empties<=OthClock.solveEmpties(hard-waited);
+		boolean early=solve && empties>=opt.solveDepth;
+		int last=solve ? Math.min(maxDepth,4)+1 : maxDepth;
+		int lastMove=0; // best move at the depth before
+		boolean extended=false;
+
+		for(int d=1;d<=last;d++){
+		    boolean solveNow=solve && d==last;
+		    if(d>1) opt=new OthPlayerThread();
+		    opt.setAnalysing(true);
+		    opt.setGameMemory(memory);
+		    if(solveNow && early) opt.setSolveDepth(empties+1); // win/loss/draw
+		    opt.setup(board,pos.whoseMove,Math.min(d,maxDepth),solveNow);
+		    if(best!=null && !solveNow) opt.setAspiration(best[3]);
+		    if(best!=null){ // keep going if no move yet
+			if(System.nanoTime()-deadline>=0) break;
+			opt.setDeadline(deadline);
+		    }
+		    int move[]=opt.search();
+		    if(move==null) break; // stopped
+		    if(opt.isPartial()){ // out of time partway through this depth
+			// The last depth's move was searched first, as the memory
+			// expected it, so a different move has done better at this depth.
+			if(move[0]!=best[0] || move[1]!=best[1]){
+			    int result[]=new int[5];
+			    System.arraycopy(move,0,result,0,4);
+			    result[4]=best[4]; // the deepest depth finished
+			    best=result;
+			    s.progress(result);
+			}
+			break;
+		    }
+		    int result[]=new int[5];
+		    System.arraycopy(move,0,result,0,4);
+		    result[4]=solveNow ? 60 : d;
+		    best=result;
+		    s.progress(result);
+		    if(Thread.currentThread().isInterrupted()) break; // cancelled
+
+		    if(clock!=null && !solve){
+			long elapsed=System.currentTimeMillis()-requested;
+			int bestMove=result[0]*10+result[1];
+			if(d>1 && bestMove!=lastMove && !extended && elapsed>soft/4){
+			    soft=Math.min(hard,soft*2); // changed late: take longer, once
+			    extended=true;
+			}
+			lastMove=bestMove;
+			if(elapsed>soft/2) break; // the next depth wouldn't finish in time
+		    }
+		}
+	    }
+	    finally{
+		// a cancelled request leaves the clock alone (the pool clears the
+		// interrupt before its next task)
+		boolean cancelled=Thread.currentThread().isInterrupted();
+		if(clock!=null && best!=null && !cancelled)
+		    clock.used(System.currentTimeMillis()-requested);
+	    }
+	    return best;
+	}
+    }
+
+} // end of class OthSessionManager
@@ -0,0 +1,101 @@
+/*
+  File: OthSharedHashTable.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - transposition table shared by several
+                               searching threads, without locks
+*/
+
+import java.lang.invoke.*;
+
+/**
+  * A transposition table which many threads can probe and store into at
+  * once, as a parallel search needs, without locks.  Entries are laid out and
+  * replaced as in OthHashTable (two per slot, the first kept for the deepest
+  * result), and it can be used anywhere an OthHashTable can.
+  *
+  * Two threads storing into the same entry at once can leave it with the key
+  * from one and the data from the other, and a thread reading while another
+  * writes can see half of each.  Rather than lock, each entry keeps the key
+  * exclusive-ored with the data instead of the key itself.  A reader takes both
+  * words and xors them back together: unless they were written together, the
+  * result isn't the key it is looking for (except by a 1 in 2^64 chance), and
+  * the entry counts as empty.  So a torn entry is lost, not believed, and the
+  * search just does the work again.  Each word is read and written whole and
+  * promptly seen by the other threads (VarHandle opaque access), but in no
+  * particular order, as the check doesn't need one.
+  *
+  * A store reads the entries before deciding where to go, and another thread
+  * may change them in between; then a result may be put in the wrong one of
+  * the pair, or an older one lost, which costs the search a little time but
+  * never gives it a wrong answer.
+  *
+  * The statistics (probes, hits, stores) aren't kept, as threads all adding to
+  * the same counters would slow each other down more than the table does.
+  *
+  * @(#)OthSharedHashTable.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthHashTable.java
+  */
+
+public class OthSharedHashTable extends OthHashTable{
+
+    static final VarHandle LONGS=MethodHandles.arrayElementVarHandle(long[].class);
+
+    private long checks[],data[]; // checks[i] is the key ^ data[i]
+    private int mask;
+
+    /** A table with 2^bits entries, 16 bytes each (bits at least 1) */
+    public OthSharedHashTable(int bits){
+	checks=new long[1<<bits];
+	data=new long[1<<bits];
+	mask=(1<<bits)-1;
+    }
+
+    public int size(){return data.length;}
+
+    /** Empties the table.  Not while searches are using it: they would carry on
+	storing entries as it is being cleared. */
+    public void clear(){
+	for(int i=0;i<data.length;i++){
+	    LONGS.setOpaque(data,i,0L);
+	    LONGS.setOpaque(checks,i,0L);
+	}
+    }
+
+    /** The entry for a position, or 0 if there isn't one (or it was being
+	written as it was read) */
+    public long probe(long key){
+	int i=(int)key & mask & ~1;
+	long d=(long)LONGS.getOpaque(data,i);
+	if(((long)LONGS.getOpaque(checks,i)^d)==key) return d;
+	d=(long)LONGS.getOpaque(data,i+1);
+	if(((long)LONGS.getOpaque(checks,i+1)^d)==key) return d;
+	return 0;
+    }
+
+    /** Saves what is known about a position, as OthHashTable.store() */
+    public void store(long key,int depth,int lower,int upper,int move){
+	int i=(int)key & mask & ~1;
+	long d=(long)LONGS.getOpaque(data,i),c=(long)LONGS.getOpaque(checks,i);
+	if((c^d)!=key){
+	    long d1=(long)LONGS.getOpaque(data,i+1);
+	    if(((long)LONGS.getOpaque(checks,i+1)^d1)==key){i++; d=d1;}
+	    else if(depth>=depth(d)){ // deepest so far: the old one moves over
+		LONGS.setOpaque(data,i+1,d);
+		LONGS.setOpaque(checks,i+1,c);
+		d=0;
+	    }
+	    else{i++; d=0;}
+	}
+	if(d!=0 && depth(d)==depth){ // merge with what we knew already
+	    int l=Math.max(lower,lower(d)),u=Math.min(upper,upper(d));
+	    if(l<=u){lower=l; upper=u;}
+	    if(move==0) move=move(d);
+	}
+	d=pack(lower,upper,depth,move);
+	LONGS.setOpaque(data,i,d);
+	LONGS.setOpaque(checks,i,key^d);
+    }
+
+} // end of class OthSharedHashTable
@@ -0,0 +1,163 @@
+/*
+  File: OthWthor.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - reader for WTHOR game archives
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+  * Reads the WTHOR (.wtb) game archives published by the Federation Francaise
+  * d'Othello.  The file is memory-mapped and games are decoded straight from the
+  * mapped buffer when asked for, so nothing is copied or allocated per game and
+  * scanning a large archive runs at the speed of the disk (or page cache).
+  *
+  * File layout (all numbers little-endian):
+  *   16 byte header: creation date (century, year, month, day), number of games
+  *   (4 bytes), 2 unused bytes, year of the games (2 bytes), board size, game
+  *   type, depth of the theoretical score, 1 reserved byte.
+  *   68 bytes per game: tournament, black and white player numbers (2 bytes
+  *   each), Black's final disc count, Black's theoretical disc count, and 60
+  *   moves, one byte each as 10*rank+file ("f5" is 56), zero once the game is
+  *   over.  Passes are not recorded.
+  *
+  * Usage: java OthWthor games.wtb [index.idx [plies]]
+  *   prints a summary, and optionally builds an OthWthorIndex of the positions
+  *   in the first few plies of every game.
+  *
+  * @(#)OthWthor.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthWthorIndex.java
+  * @see OthPosition.java
+  */
+
+public class OthWthor{
+
+    static final int HEADER_SIZE=16,GAME_SIZE=68,MOVES_OFFSET=8;
+
+    private MappedByteBuffer buf;
+    private int gameCount;
+    private String name;
+
+    /** Maps the archive into memory.  Archives over 2GB are not supported (the
+	largest published ones are a few MB each). */
+    public OthWthor(File f) throws IOException {
+	name=f.getName();
+	RandomAccessFile raf=new RandomAccessFile(f,"r");
+	try{
+	    FileChannel ch=raf.getChannel();
+	    if(ch.size()<HEADER_SIZE) throw new IOException("Not a WTHOR file: "+f);
+	    if(ch.size()>Integer.MAX_VALUE) throw new IOException("WTHOR file too large: "+f);
+	    buf=ch.map(FileChannel.MapMode.READ_ONLY,0,ch.size());
+	}
+	finally{
+	    raf.close(); // the mapping stays valid after the file is closed
+	}
+	buf.order(ByteOrder.LITTLE_ENDIAN);
+
+	int boardSize=buf.get(12);
+	if(boardSize!=0 && boardSize!=8) throw new IOException("Not an 8x8 WTHOR file: "+f);
+
+	// trust the file length rather than the header if they disagree
+	gameCount=buf.getInt(4);
+	int fits=(buf.capacity()-HEADER_SIZE)/GAME_SIZE;
+	if(gameCount<0 || gameCount>fits){
+	    System.out.println("Warning: "+name+" header says "+gameCount+" games, file holds "+fits);
+	    gameCount=fits;
+	}
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                      header and per-game fields                        */
+    /* ---------------------------------------------------------------------- */
+
+    public int getGameCount(){return gameCount;}
+    public int getYear(){return buf.getShort(10)&0xffff;}
+    public int getTheoreticalDepth(){return buf.get(14)&0xff;}
+    public String getName(){return name;}
+
+    /** Byte offset of game g in the file */
+    public int getOffset(int g){return HEADER_SIZE+g*GAME_SIZE;}
+
+    public int getTournament(int g){return buf.getShort(getOffset(g))&0xffff;}
+    public int getBlackPlayer(int g){return buf.getShort(getOffset(g)+2)&0xffff;}
+    public int getWhitePlayer(int g){return buf.getShort(getOffset(g)+4)&0xffff;}
+
+    /** Black's disc count at the end of game g */
+    public int getBlackScore(int g){return buf.get(getOffset(g)+6)&0xff;}
+
+    /** Black's disc count with perfect play from getTheoreticalDepth() empties */
+    public int getTheoreticalScore(int g){return buf.get(getOffset(g)+7)&0xff;}
+
+    /** Returns the square (0-63, as OthPosition) of move number ply (0-59) of
+	game g, or -1 if the game finished before then or the byte is garbage */
+    public int getMove(int g,int ply){
+	int code=buf.get(getOffset(g)+MOVES_OFFSET+ply)&0xff;
+	int rank=code/10,file=code%10;
+	if(rank<1 || rank>8 || file<1 || file>8) return -1;
+	return (8-rank)*8+(file-1); // same conversion as OthPosition.parseSquare()
+    }
+
+    /** Plays the first plies moves of game g on pos, which should be at the
+	start position.  Returns the number of moves played, which is less than
+	plies if the game ended sooner or an illegal move was found. */
+    public int replay(int g,OthPosition pos,int plies){
+	int ply;
+	for(ply=0;ply<plies && ply<60;ply++){
+	    int sq=getMove(g,ply);
+	    if(sq<0 || !pos.makeMove(1+(sq&7),1+(sq>>3))) break;
+	}
+	return ply;
+    }
+
+    /** The moves of game g in normal notation, e.g. "f5d6c3..." */
+    public String getMoveString(int g){
+	StringBuffer sb=new StringBuffer(120);
+	for(int ply=0;ply<60;ply++){
+	    int sq=getMove(g,ply);
+	    if(sq<0) break;
+	    sb.append(OthPosition.squareName(sq));
+	}
+	return sb.toString();
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                                  MAIN                                  */
+    /* ---------------------------------------------------------------------- */
+
+    static public void main(String s[]) throws Exception {
+	if(s.length<1){
+	    System.out.println("Usage: java OthWthor games.wtb [index.idx [plies]]");
+	    return;
+	}
+	long start=System.currentTimeMillis();
+	OthWthor w=new OthWthor(new File(s[0]));
+
+	// replay every game, to check the moves are legal and to time the scan
+
+	OthPosition pos=new OthPosition();
+	int bad=0;
+	long moves=0;
+	for(int g=0;g<w.getGameCount();g++){
+	    pos.initPosition();
+	    int n=w.replay(g,pos,60);
+	    moves+=n;
+	    if(n<60 && w.getMove(g,n)>=0) bad++; // stopped at an illegal move
+	}
+	System.out.println(w.getName()+": "+w.getGameCount()+" games from "+w.getYear()+", "+
+			   moves+" moves, "+bad+" with illegal moves, "+
+			   (System.currentTimeMillis()-start)+" ms");
+
+	if(s.length>1){
+	    int plies=(s.length>2) ? Integer.parseInt(s[2]) : 20;
+	    start=System.currentTimeMillis();
+	    int n=OthWthorIndex.build(w,plies,new File(s[1]));
+	    System.out.println("Index of "+n+" positions written to "+s[1]+", "+
+			       (System.currentTimeMillis()-start)+" ms");
+	}
+    }
+
+} // end of class OthWthor
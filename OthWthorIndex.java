@@ -0,0 +1,173 @@
+/*
+  File: OthWthorIndex.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - on-disk index of positions in a WTHOR archive
+*/
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+  * An on-disk index from positions to the games of a WTHOR archive they occur
+  * in.  Positions are identified by OthPosition.canonicalKey(), so games which
+  * reach the same position by reflection or rotation are found together.  Each
+  * entry also holds the game's result, so that (for instance) an opening book
+  * builder can get win/loss statistics for a position without touching the games
+  * at all.
+  *
+  * The file is a 16 byte header (magic number, number of entries, plies indexed)
+  * followed by 16 byte entries sorted by key:
+  *   key (8 bytes), offset of the game in the archive (4 bytes), ply (number of
+  *   moves made to reach the position), Black's final disc count, Black's
+  *   theoretical disc count, 1 unused byte.
+  * It is memory-mapped and binary-searched, like the archive itself.
+  *
+  * @(#)OthWthorIndex.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthWthor.java
+  */
+
+public class OthWthorIndex{
+
+    static final int MAGIC=0x4f544858; // "OTHX"
+    static final int HEADER_SIZE=16,ENTRY_SIZE=16;
+
+    private MappedByteBuffer buf;
+    private int entries;
+    private int plies;
+
+    /** Opens an index made by build() */
+    public OthWthorIndex(File f) throws IOException {
+	RandomAccessFile raf=new RandomAccessFile(f,"r");
+	try{
+	    FileChannel ch=raf.getChannel();
+	    buf=ch.map(FileChannel.MapMode.READ_ONLY,0,ch.size());
+	}
+	finally{
+	    raf.close();
+	}
+	buf.order(ByteOrder.LITTLE_ENDIAN);
+	if(buf.capacity()<HEADER_SIZE || buf.getInt(0)!=MAGIC)
+	    throw new IOException("Not a position index: "+f);
+	entries=buf.getInt(4);
+	plies=buf.getInt(8);
+	if((long)HEADER_SIZE+(long)entries*ENTRY_SIZE>buf.capacity())
+	    throw new IOException("Position index is truncated: "+f);
+    }
+
+    public int size(){return entries;}
+    public int getPlies(){return plies;}
+
+    public long getKey(int i){return buf.getLong(HEADER_SIZE+i*ENTRY_SIZE);}
+    public int getGameOffset(int i){return buf.getInt(HEADER_SIZE+i*ENTRY_SIZE+8);}
+    public int getPly(int i){return buf.get(HEADER_SIZE+i*ENTRY_SIZE+12)&0xff;}
+    public int getBlackScore(int i){return buf.get(HEADER_SIZE+i*ENTRY_SIZE+13)&0xff;}
+    public int getTheoreticalScore(int i){return buf.get(HEADER_SIZE+i*ENTRY_SIZE+14)&0xff;}
+
+    /** Game number (as used by OthWthor) of entry i */
+    public int getGame(int i){
+	return (getGameOffset(i)-OthWthor.HEADER_SIZE)/OthWthor.GAME_SIZE;
+    }
+
+    /** Returns the first entry with the given key, or -1 if there are none.  The
+	others follow it directly. */
+    public int find(long key){
+	int lo=0,hi=entries; // first entry with key>=our key is in [lo,hi]
+	while(lo<hi){
+	    int mid=(lo+hi)>>>1;
+	    if(getKey(mid)<key) lo=mid+1;
+	    else hi=mid;
+	}
+	if(lo<entries && getKey(lo)==key) return lo;
+	return -1;
+    }
+
+    /** Number of entries for the given key */
+    public int count(long key){
+	int i=find(key);
+	if(i<0) return 0;
+	int n=0;
+	while(i+n<entries && getKey(i+n)==key) n++;
+	return n;
+    }
+
+    /* ---------------------------------------------------------------------- */
+    /*                          building the index                            */
+    /* ---------------------------------------------------------------------- */
+
+    /** Indexes every position from the start up to (and including) the one after
+	ply moves of each game in w, and writes the index to f.  Returns the number
+	of entries. */
+    public static int build(OthWthor w,int plies,File f) throws IOException {
+	long maxEntries=(long)w.getGameCount()*(plies+1);
+	if(maxEntries>(Integer.MAX_VALUE-HEADER_SIZE)/ENTRY_SIZE)
+	    throw new IOException("Too many positions to index; try fewer plies");
+
+	long keys[]=new long[(int)maxEntries];
+	long data[]=new long[(int)maxEntries]; // offset | ply<<32 | scores<<40
+	int n=0;
+	OthPosition pos=new OthPosition();
+
+	for(int g=0;g<w.getGameCount();g++){
+	    pos.initPosition();
+	    long game=(w.getOffset(g)&0xffffffffL) |
+		((long)w.getBlackScore(g)<<40) | ((long)w.getTheoreticalScore(g)<<48);
+	    for(int ply=0;;ply++){
+		keys[n]=pos.canonicalKey();
+		data[n++]=game | ((long)ply<<32);
+		if(ply==plies) break;
+		int sq=w.getMove(g,ply);
+		if(sq<0 || !pos.makeMove(1+(sq&7),1+(sq>>3))) break; // game over, or bad move
+	    }
+	}
+	sort(keys,data,0,n-1);
+
+	RandomAccessFile raf=new RandomAccessFile(f,"rw");
+	try{
+	    raf.setLength(0);
+	    FileChannel ch=raf.getChannel();
+	    MappedByteBuffer out=ch.map(FileChannel.MapMode.READ_WRITE,0,
+					HEADER_SIZE+(long)n*ENTRY_SIZE);
+	    out.order(ByteOrder.LITTLE_ENDIAN);
+	    out.putInt(MAGIC).putInt(n).putInt(plies).putInt(0);
+	    for(int i=0;i<n;i++){
+		out.putLong(keys[i]);
+		out.putInt((int)data[i]);
+		out.put((byte)(data[i]>>>32));
+		out.put((byte)(data[i]>>>40));
+		out.put((byte)(data[i]>>>48));
+		out.put((byte)0);
+	    }
+	    out.force();
+	}
+	finally{
+	    raf.close();
+	}
+	return n;
+    }
+
+    // Quicksort on keys, moving the data along with them.  (Arrays.sort() can't
+    // sort two arrays together, and we don't want an object per entry.)
+
+    private static void sort(long keys[],long data[],int lo,int hi){
+	while(lo<hi){
+	    long pivot=keys[(lo+hi)>>>1];
+	    int i=lo,j=hi;
+	    while(i<=j){
+		while(keys[i]<pivot) i++;
+		while(keys[j]>pivot) j--;
+		if(i<=j){
+		    long t=keys[i]; keys[i]=keys[j]; keys[j]=t;
+		    t=data[i]; data[i]=data[j]; data[j]=t;
+		    i++; j--;
+		}
+	    }
+	    // recurse into the smaller half, loop on the larger, to limit the stack
+	    if(j-lo<hi-i){sort(keys,data,lo,j); lo=i;}
+	    else {sort(keys,data,i,hi); hi=j;}
+	}
+    }
+
+} // end of class OthWthorIndex
@@ -15,6 +15,16 @@
                                using the Observer/Observable interface. 0.14
 			       including setting up OthPlayerThread differently.
 
+  19 Oct 26                    Resizable window; the board decides its own size, and turns
+                               mouse positions into squares. 0.15
+
+  19 Oct 26                    "Animate flips" option. 0.16
+
+  19 Oct 26                    "Selective search" option. 0.17
+
+  19 Oct 26                    The computer player keeps what it found out from one move to
+                               the next (OthGameMemory), until a new game. 0.18
+
 */
 
 import java.awt.*; 
@@ -26,9 +36,9 @@ import java.io.*;
   * This is the main class for an Othello board game. The board is maintained and drawn by
   * an OthPanel and a computer opponent is provided by OthPlayerThread.
   *
-  * @(#)Othello.java 0.14 99/10/12
+  * @(#)Othello.java 0.18 26/10/19
   * @author David N. Allsopp
-  * @version 0.14 1999 October 12
+  * @version 0.18 2026 October 19
   * @see OthPanel.java
   * @see OthPlayerThread.java
   */
@@ -40,9 +50,11 @@ public class Othello{
 
     static int searchLevel=5; // initial search depth, adjustable from menu
     static boolean solving=true; // does computer use endgame solving?
+    static OthProbCut probCut=null; // parameters for the selective search, if it's on
     static final OthPanel board = new OthPanel(); 
     static Thread thr = new Thread(); // computer opponent in another thread
     static OthPlayerThread opt = new OthPlayerThread();
+    static final OthGameMemory memory = new OthGameMemory(); // kept between moves
 
     /* ---------------------------------------------------------------------- */
     /*                                  MAIN                                  */
@@ -80,10 +92,14 @@ public class Othello{
 
 	final JCheckBoxMenuItem m2mi1 = new JCheckBoxMenuItem("Show legal moves");
 	m2mi1.setState(true);
-	m2.add(m2mi1); m2.addSeparator();
+	final JCheckBoxMenuItem m2mi2 = new JCheckBoxMenuItem("Animate flips");
+	m2mi2.setState(false);
+	m2.add(m2mi1); m2.add(m2mi2); m2.addSeparator();
 
 	final JCheckBoxMenuItem m4mi1 = new JCheckBoxMenuItem("Endgame solving");
 	m4mi1.setState(true);
+	final JCheckBoxMenuItem m4mi2 = new JCheckBoxMenuItem("Selective search");
+	m4mi2.setState(false);
 
 	final JRadioButtonMenuItem human = new JRadioButtonMenuItem("2 Humans play");
 	final JRadioButtonMenuItem cwhite = new JRadioButtonMenuItem("Computer plays white");
@@ -110,7 +126,7 @@ public class Othello{
 	    if(i==5)item.setSelected(true);
 	}
 	m4.addSeparator();
-	m4.add(m4mi1);
+	m4.add(m4mi1); m4.add(m4mi2);
 
 	// four handlers for setting which side(s) the computer is playing on.
 
@@ -191,6 +207,7 @@ public class Othello{
 		public void actionPerformed(ActionEvent e)
 		{
 		    opt.stopit();  // stop running thread
+		    memory.reset(); // nothing from the last game is any use
 		    board.unlock();
 		    board.initPanel(); // reset board
 		    board.sbar.setStatusBarText("New game: Black to move.");
@@ -210,12 +227,24 @@ public class Othello{
 		    board.setShowLegal(m2mi1.getState()); 
 		}});
 
+	m2mi2.addActionListener( new ActionListener(){ // handle check box menu item
+		public void actionPerformed(ActionEvent e)
+		{
+		    board.setAnimate(m2mi2.getState()); 
+		}});
+
 	m4mi1.addActionListener( new ActionListener(){ // handle check box menu item
 		public void actionPerformed(ActionEvent e)
 		{
 		    solving=m4mi1.getState();
 		}});
 
+	m4mi2.addActionListener( new ActionListener(){ // handle check box menu item
+		public void actionPerformed(ActionEvent e)
+		{
+		    probCut=m4mi2.getState() ? OthProbCut.getDefault() : null;
+		}});
+
 
 	m1.add(mi1); m1.add(mi2);
 	mb.add(m1);mb.add(m2);mb.add(m4);mb.add(m3);
@@ -223,15 +252,13 @@ public class Othello{
 
         frame.setJMenuBar(mb);
         frame.getContentPane().setLayout(new BorderLayout(1,1));
-        board.setSize(new Dimension(256,256)); //needed for proper frame repaint
-        board.setPreferredSize(new Dimension(256,256)); // seems to be needed for pack()
-        frame.getContentPane().add(board, "Center");
+        frame.getContentPane().add(board, "Center"); // board sets its own preferred size
 
         board.sbar.setMaximumSize(board.getPreferredSize());
         frame.getContentPane().add(board.sbar, "South");
 
         frame.pack();
-        frame.setResizable(false);
+        frame.setResizable(true); // the board scales to fit
         frame.setVisible(true);
 
         board.addMouseListener(new MouseAdapter() {
@@ -241,9 +268,9 @@ public class Othello{
 			if((board.getWhoseMove()==BLACK && !board.getIsComputerBlack()) || 
 			   (board.getWhoseMove()==WHITE && !board.getIsComputerWhite())) {
 			    int mx=me.getX(); int my=me.getY();
-			    int x=1+mx/32; int y=1+my/32;
-			    if(board.tryMove(x,y)) frame.repaint();} 
-                             // try to make a human move
+			    int x=board.boardX(mx); int y=board.boardY(my); // 0 if off the board
+			    board.tryMove(x,y);} // try to make a human move
+                             // (the board repaints the squares which change)
           
 		        // May now be a computer move(s) -
 		        // see if it is, and if so tell the computer player to  
@@ -282,6 +309,8 @@ public class Othello{
 		thr = new Thread(opt); // computer opponent in another thread
 		opt.addObserver(board); // register observer/observable interface
 		opt.setup(board.boardArray,board.getWhoseMove(),searchLevel,solving); 
+		opt.setProbCut(probCut); // null for a full-width search
+		opt.setGameMemory(memory);
                   // initialise computer player
 		board.lock(); //prevent board changes until thread has finished
 		thr.start(); // set new thread running
@@ -0,0 +1,142 @@
+/*
+  File: OthBatchEvalVector.java
+
+  Date       Author            Changes
+  19 Oct 26                    Created v0.1 - OthBatchEval with the Vector API
+*/
+
+import jdk.incubator.vector.*;
+
+/**
+  * An OthBatchEval which works out the mobility of several positions at once
+  * with the Vector API: as many as there are 64-bit lanes
+  * in the machine's preferred vector size (4 with AVX2, 8 with AVX-512).
+  * The shifts and masks of OthBatchEval.lineMoves() are done on all the lanes
+  * together, and the bits counted by adding them up in pairs, nibbles and
+  * bytes (the Vector API in JDK 17 has no bit count).  The rest of the score
+  * (a few squares, and the stable edges, which are looked up in a table), and
+  * the positions left over at the end, are done one at a time as in
+  * OthBatchEval.
+  *
+  * The Vector API is an incubator module, so this is kept apart from the rest
+  * of the program and compiled and run with --add-modules jdk.incubator.vector
+  * (see README.md).  OthBatchEval.create() finds it by name when it can.
+  *
+  * @(#)OthBatchEvalVector.java 0.1 26/10/19
+  * @version 0.1 2026 October 19
+  * @see OthBatchEval.java
+  */
+
+public class OthBatchEvalVector extends OthBatchEval{
+
+    static final VectorSpecies<Long> LONGS=LongVector.SPECIES_PREFERRED;
+
+    public OthBatchEvalVector(int capacity){
+	super(capacity);
+    }
+
+    public String getKind(){return "Vector API, "+LONGS.length()+" lanes";}
+
+    // C2 only turns the Vector API's calls into vector instructions when it
+    // can inline all of them, and it stops inlining once a method has grown
+    // big, leaving an object made for every vector (much slower than
+    // OthBatchEval).  So each loop here does only a little of the work, and
+    // the batch is taken a block at a time, so that the work space, and the
+    // positions read again by each loop, stay in the cache.
+
+    static final int BLOCK=256; // positions at a time
+
+    long counts[]=new long[BLOCK],sums[]=new long[BLOCK]; // work space: black's, white's
+
+    public void evaluate(){
+	int n=LONGS.loopBound(count);
+	for(int from=0;from<n;from+=BLOCK){
+	    int to=Math.min(n,from+BLOCK);
+	    for(int p=0;p<2;p++){
+		long own[]=(p==0) ? black : white,opp[]=(p==0) ? white : black;
+		long into[]=(p==0) ? counts : sums;
+		lineCounts(own,opp,into,from,to,1,SIDEWAYS,-1L,false);
+		lineCounts(own,opp,into,from,to,8,-1L,-1L,true);
+		lineCounts(own,opp,into,from,to,7,SIDEWAYS,DIAG1_SCORED,true);
+		lineCounts(own,opp,into,from,to,9,SIDEWAYS,DIAG2_SCORED,true);
+		overEnds(own,opp,into,from,to);
+	    }
+	    mobilities(from,to);
+	    for(int i=from;i<to;i++){
+		long b=black[i],w=white[i];
+		int m=(int)counts[i-from];
+		mobility[i]=m;
+		score[i]=m+squares(b,w)+edges(b,w);
+	    }
+	}
+	evaluate(n,count);
+    }
+
+    /** Adds own's moves along the lines of step s (see OthBatchEval.lineMoves(),
+	with opp masked by sideways), counted byte by byte (see byteCounts()), to
+	into[] for positions from to to-1, or puts them there if not add */
+    void lineCounts(long own[],long opp[],long into[],int from,int to,int s,long sideways,
+		    long lines,boolean add){
+	for(int i=from;i<to;i+=LONGS.length()){
+	    LongVector o=LongVector.fromArray(LONGS,own,i);
+	    LongVector p=LongVector.fromArray(LONGS,opp,i);
+	    LongVector c=byteCounts(lineMoves(o,p.and(sideways),o.or(p).not(),s).and(lines));
+	    if(add) c=c.add(LongVector.fromArray(LONGS,into,i-from));
+	    c.intoArray(into,i-from);
+	}
+    }
+
+    /** Adds OthBatchEval.overEnd()'s moves, byte by byte, to into[] */
+    void overEnds(long own[],long opp[],long into[],int from,int to){
+	for(int i=from;i<to;i+=LONGS.length()){
+	    LongVector o=LongVector.fromArray(LONGS,own,i);
+	    LongVector p=LongVector.fromArray(LONGS,opp,i);
+	    overEnd(o,p).add(LongVector.fromArray(LONGS,into,i-from)).intoArray(into,i-from);
+	}
+    }
+
+    /** Adds up the bytes: black's moves less white's, weighted, into counts[] */
+    void mobilities(int from,int to){
+	for(int i=0;i<to-from;i+=LONGS.length()){
+	    LongVector b=addBytes(LongVector.fromArray(LONGS,counts,i));
+	    LongVector w=addBytes(LongVector.fromArray(LONGS,sums,i));
+	    b.sub(w).mul(MOBIL_WEIGHT).intoArray(counts,i);
+	}
+    }
+
+    /** OthBatchEval.lineMoves() on each lane */
+    static LongVector lineMoves(LongVector own,LongVector opp,LongVector empty,int s){
+	LongVector t,moves;
+	t=opp.and(own.lanewise(VectorOperators.LSHL,s));
+	for(int k=0;k<5;k++) t=t.or(opp.and(t.lanewise(VectorOperators.LSHL,s)));
+	moves=t.lanewise(VectorOperators.LSHL,s);
+	t=opp.and(own.lanewise(VectorOperators.LSHR,s));
+	for(int k=0;k<5;k++) t=t.or(opp.and(t.lanewise(VectorOperators.LSHR,s)));
+	moves=moves.or(t.lanewise(VectorOperators.LSHR,s));
+	return moves.and(empty);
+    }
+
+    /** OthBatchEval.overEnd() on each lane */
+    static LongVector overEnd(LongVector own,LongVector opp){
+	LongVector t=opp.and(own.and(NOT_A).lanewise(VectorOperators.LSHL,7));
+	for(int k=0;k<5;k++) t=t.or(opp.and(t.and(NOT_A).lanewise(VectorOperators.LSHL,7)));
+	LongVector u=opp.and(own.and(NOT_H).lanewise(VectorOperators.LSHL,9));
+	for(int k=0;k<5;k++) u=u.or(opp.and(u.and(NOT_H).lanewise(VectorOperators.LSHL,9)));
+	return byteCounts(t.and(DIAG1_ENDS)).add(byteCounts(u.and(DIAG2_ENDS)));
+    }
+
+    /** The number of bits set in each byte of each lane.  Adding these up for
+	several boards before addBytes() is quicker than counting each one's bits
+	in full (as long as no byte goes over 255). */
+    static LongVector byteCounts(LongVector x){
+	x=x.sub(x.lanewise(VectorOperators.LSHR,1).and(0x5555555555555555L));
+	x=x.and(0x3333333333333333L).add(x.lanewise(VectorOperators.LSHR,2).and(0x3333333333333333L));
+	return x.add(x.lanewise(VectorOperators.LSHR,4)).and(0x0f0f0f0f0f0f0f0fL);
+    }
+
+    /** The sum of the bytes of each lane */
+    static LongVector addBytes(LongVector x){
+	return x.mul(0x0101010101010101L).lanewise(VectorOperators.LSHR,56);
+    }
+
+} // end of class OthBatchEvalVector